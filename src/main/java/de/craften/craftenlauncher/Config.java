@@ -34,6 +34,27 @@ public class Config {
     @CommandLineValue(shortOpt = "fullscreen", longOpt = "fullscreen")
     private boolean fullscreen;
 
+    @CommandLineValue(shortOpt = "segmentthreshold", longOpt = "segmentthreshold", hasArg = true)
+    private String segmentThreshold;
+
+    @CommandLineValue(shortOpt = "hedge", longOpt = "hedge")
+    private boolean hedge;
+
+    @CommandLineValue(shortOpt = "connecttimeout", longOpt = "connecttimeout", hasArg = true)
+    private String connectTimeout;
+
+    @CommandLineValue(shortOpt = "readtimeout", longOpt = "readtimeout", hasArg = true)
+    private String readTimeout;
+
+    @CommandLineValue(shortOpt = "deadline", longOpt = "deadline", hasArg = true)
+    private String deadline;
+
+    @CommandLineValue(shortOpt = "minspeed", longOpt = "minspeed", hasArg = true)
+    private String minSpeed;
+
+    @CommandLineValue(shortOpt = "assetorder", longOpt = "assetorder", hasArg = true)
+    private String assetOrder;
+
     public String getMcPath() {
         return mcPath;
     }
@@ -66,10 +87,38 @@ public class Config {
         return fullscreen;
     }
 
+    public boolean isHedge() {
+        return hedge;
+    }
+
     public String getProfileID() {
         return profileID;
     }
 
+    public String getSegmentThreshold() {
+        return segmentThreshold;
+    }
+
+    public String getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public String getReadTimeout() {
+        return readTimeout;
+    }
+
+    public String getDeadline() {
+        return deadline;
+    }
+
+    public String getMinSpeed() {
+        return minSpeed;
+    }
+
+    public String getAssetOrder() {
+        return assetOrder;
+    }
+
     public boolean hasMinecraftPath() {
         return mcPath != null;
     }
@@ -85,4 +134,28 @@ public class Config {
     public boolean hasProfileID() {
         return profileID != null;
     }
+
+    public boolean hasSegmentThreshold() {
+        return segmentThreshold != null;
+    }
+
+    public boolean hasConnectTimeout() {
+        return connectTimeout != null;
+    }
+
+    public boolean hasReadTimeout() {
+        return readTimeout != null;
+    }
+
+    public boolean hasDeadline() {
+        return deadline != null;
+    }
+
+    public boolean hasMinSpeed() {
+        return minSpeed != null;
+    }
+
+    public boolean hasAssetOrder() {
+        return assetOrder != null;
+    }
 }
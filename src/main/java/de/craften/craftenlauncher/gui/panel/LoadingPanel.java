@@ -19,7 +19,7 @@ public class LoadingPanel extends JPanel implements Observer {
     private static final Logger LOGGER = LogManager.getLogger(LoadingPanel.class);
     private MaterialProgressSpinner pbar = new MaterialProgressSpinner();
     private JLabel info = new JLabel(), traffic = new JLabel();
-    private boolean wantToStart, isMinecraftDownloaded;
+    private volatile boolean wantToStart, isMinecraftDownloaded;
 
     public LoadingPanel() {
         setBackground(Color.WHITE);
@@ -34,6 +34,7 @@ public class LoadingPanel extends JPanel implements Observer {
         wantToStart = true;
 
         if (isMinecraftDownloaded) {
+            wantToStart = false;
             MainController.getInstance().startMinecraft();
         }
     }
@@ -66,7 +67,11 @@ public class LoadingPanel extends JPanel implements Observer {
     public void update(Observable o, Object arg) {
         if (o instanceof DownloadVM) {
             String context = ((DownloadVM) o).getInfo();
-            traffic.setText(((DownloadVM) o).getDownloadedKByte() + " KB");
+            String retryState = ((DownloadVM) o).getRetryState();
+            int concurrent = ((DownloadVM) o).getConcurrentDownloads();
+            traffic.setText(((DownloadVM) o).getDownloadedKByte() + " KB"
+                    + (concurrent > 0 ? " - " + TranslationManager.getString("concurrentDownloads", concurrent) : "")
+                    + (retryState != null ? " - " + retryState : ""));
             if (context != null && !context.equals("")) {
                 LOGGER.debug(context);
                 try {
@@ -78,6 +83,8 @@ public class LoadingPanel extends JPanel implements Observer {
 
             isMinecraftDownloaded = ((DownloadVM) o).isMinecraftDownloaded();
             if (wantToStart && isMinecraftDownloaded) {
+                // every later progress update would start Minecraft again
+                wantToStart = false;
                 MainController.getInstance().startMinecraft();
             }
         }
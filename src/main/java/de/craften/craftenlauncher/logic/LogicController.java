@@ -5,8 +5,12 @@ import de.craften.craftenlauncher.exception.*;
 import de.craften.craftenlauncher.logic.auth.AuthenticationService;
 import de.craften.craftenlauncher.logic.auth.MinecraftUser;
 import de.craften.craftenlauncher.logic.auth.Profiles;
+import de.craften.craftenlauncher.logic.download.DownloadHelper;
+import de.craften.craftenlauncher.logic.download.HttpTransport;
 import de.craften.craftenlauncher.logic.download.DownloadService;
 import de.craften.craftenlauncher.logic.download.DownloadTasks;
+import de.craften.craftenlauncher.logic.download.loader.AssetOrders;
+import de.craften.craftenlauncher.logic.download.loader.RessourceDownloader;
 import de.craften.craftenlauncher.logic.minecraft.MinecraftInfo;
 import de.craften.craftenlauncher.logic.minecraft.MinecraftPathImpl;
 import de.craften.craftenlauncher.logic.minecraft.MinecraftProcess;
@@ -19,10 +23,14 @@ import org.apache.logging.log4j.Logger;
 
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Observer;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class LogicController {
     private static final Logger LOGGER = LogManager.getLogger(LogicController.class);
+    private static final long EXIT_WAIT = 10 * 60 * 1000;
+    private final AtomicBoolean mLaunched = new AtomicBoolean();
     private AuthenticationService mAuthService;
     private DownloadService mDownService;
     private Config config;
@@ -65,6 +73,58 @@ public class LogicController {
             mMincraftArgs.put("xmx", config.getXmx());
         }
 
+        if (config.hasSegmentThreshold()) {
+            try {
+                DownloadHelper.setSegmentThreshold(Long.parseLong(config.getSegmentThreshold()) * 1024 * 1024);
+            } catch (NumberFormatException e) {
+                LOGGER.warn("Invalid segment threshold: " + config.getSegmentThreshold());
+            }
+        }
+
+        if (config.isHedge()) {
+            DownloadHelper.setHedging(true);
+        }
+
+        if (config.hasConnectTimeout()) {
+            try {
+                HttpTransport.setConnectTimeout(Integer.parseInt(config.getConnectTimeout()) * 1000);
+            } catch (NumberFormatException e) {
+                LOGGER.warn("Invalid connect timeout: " + config.getConnectTimeout());
+            }
+        }
+
+        if (config.hasReadTimeout()) {
+            try {
+                HttpTransport.setReadTimeout(Integer.parseInt(config.getReadTimeout()) * 1000);
+            } catch (NumberFormatException e) {
+                LOGGER.warn("Invalid read timeout: " + config.getReadTimeout());
+            }
+        }
+
+        if (config.hasDeadline()) {
+            try {
+                DownloadHelper.setDeadline(Long.parseLong(config.getDeadline()) * 1000);
+            } catch (NumberFormatException e) {
+                LOGGER.warn("Invalid deadline: " + config.getDeadline());
+            }
+        }
+
+        if (config.hasMinSpeed()) {
+            try {
+                DownloadHelper.setMinThroughput(Long.parseLong(config.getMinSpeed()) * 1024);
+            } catch (NumberFormatException e) {
+                LOGGER.warn("Invalid minimal download speed: " + config.getMinSpeed());
+            }
+        }
+
+        if (config.hasAssetOrder()) {
+            try {
+                RessourceDownloader.setOrder(AssetOrders.valueOf(config.getAssetOrder().toUpperCase(Locale.ENGLISH)));
+            } catch (IllegalArgumentException e) {
+                LOGGER.warn("Invalid asset order: " + config.getAssetOrder());
+            }
+        }
+
         mVersionList = new VersionListHelper(mMinecraftPath);
 
         if (config.getVersion() != null) {
@@ -282,6 +342,11 @@ public class LogicController {
             throw new CraftenLogicException("Trying to start Minecraft although User is not logged in!");
         }
 
+        if (!mLaunched.compareAndSet(false, true)) {
+            LOGGER.debug("Minecraft has already been started");
+            return;
+        }
+
         MinecraftInfo info = new MinecraftInfo(mCurrentVersion.getVersion());
         info.setUser(mProfiles.getSelectedUser());
         info.setMSV(mCurrentVersion);
@@ -297,10 +362,11 @@ public class LogicController {
         process.startMinecraft();
 
         if (!process.getSuccess()) {
+            mLaunched.set(false);
             LOGGER.error("Minecraft process could not be started!");
             throw new CraftenLogicException("Minecraft Process could not be started!");
         } else {
-            System.exit(0);
+            exitAfterDownloads();
         }
     }
 
@@ -310,6 +376,11 @@ public class LogicController {
             throw new CraftenLogicException("Minecraft download not yet complete");
         }
 
+        if (!mLaunched.compareAndSet(false, true)) {
+            LOGGER.debug("Minecraft has already been started");
+            return;
+        }
+
         MinecraftUser user = new MinecraftUser();
         user.setUsername(username);
         user.setProfileId("0123456789abcdef0123456789abcdef");
@@ -331,11 +402,42 @@ public class LogicController {
         LOGGER.info("Started without login");
 
         if (!process.getSuccess()) {
+            mLaunched.set(false);
             LOGGER.error("Minecraft process could not be started!");
             throw new CraftenLogicException("Minecraft Process could not be started!");
         } else {
+            exitAfterDownloads();
+        }
+    }
+
+    /**
+     * Minecraft may be started before all assets are downloaded. The launcher waits for the remaining
+     * downloads before it exits, so they are not lost. The wait runs on its own thread, the caller may
+     * be a download worker or the event dispatch thread, and is bounded because the assets may take
+     * very long on a slow connection.
+     */
+    private void exitAfterDownloads() {
+        final DownloadService service = mDownService;
+
+        if (service == null || service.isAllDone()) {
             System.exit(0);
         }
+
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                LOGGER.info("Waiting for remaining downloads before exiting");
+                try {
+                    if (!service.awaitAllDownloads(EXIT_WAIT)) {
+                        LOGGER.warn("Remaining downloads did not finish in time, exiting anyway");
+                    }
+                } catch (InterruptedException e) {
+                    LOGGER.warn("Interrupted while waiting for remaining downloads");
+                }
+                System.exit(0);
+            }
+        }, "Launcher-Exit");
+        thread.start();
     }
 
     public void setDownloadObserver(Observer server) {
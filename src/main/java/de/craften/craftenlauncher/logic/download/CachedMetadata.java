@@ -0,0 +1,163 @@
+package de.craften.craftenlauncher.logic.download;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.TimeZone;
+
+/**
+ * Validators (ETag, Last-Modified) of a downloaded metadata file, stored next to the file. They are
+ * only used while the file has the size and modification time it had when it was downloaded, a file
+ * which was changed locally is downloaded unconditionally.
+ * <p>
+ * The validators of a partially downloaded file are stored the same way, a download is only resumed
+ * if the server still has the same version of the file.
+ */
+class CachedMetadata {
+    private static final Logger LOGGER = LogManager.getLogger(CachedMetadata.class);
+    private static final String SUFFIX = ".meta";
+    private final String mETag;
+    private final long mLastModified;
+
+    CachedMetadata(String eTag, long lastModified) {
+        this.mETag = eTag;
+        this.mLastModified = lastModified;
+    }
+
+    public String getETag() {
+        return mETag;
+    }
+
+    public long getLastModified() {
+        return mLastModified;
+    }
+
+    /**
+     * Returns the value of an If-Range header. Weak ETags can not be used for range requests.
+     *
+     * @return the ETag or Last-Modified date or null if there is no strong validator
+     */
+    public String getIfRange() {
+        if (mETag != null && !mETag.startsWith("W/")) {
+            return mETag;
+        }
+
+        if (mLastModified > 0) {
+            SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+            format.setTimeZone(TimeZone.getTimeZone("GMT"));
+            return format.format(new Date(mLastModified));
+        }
+        return null;
+    }
+
+    /**
+     * Reads the validators of the given file.
+     *
+     * @param file
+     * @return the validators or null if there are none or the file changed since they were stored
+     */
+    static CachedMetadata read(File file) {
+        return read(file, true);
+    }
+
+    /**
+     * Reads the validators of a partially downloaded file. The file grows while it is downloaded, so
+     * its size and modification time are not checked.
+     *
+     * @param part
+     * @return the validators or null if there are none
+     */
+    static CachedMetadata readPart(File part) {
+        return read(part, false);
+    }
+
+    private static CachedMetadata read(File file, boolean checkFile) {
+        File meta = new File(file.getPath() + SUFFIX);
+
+        if (!file.isFile() || !meta.isFile()) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(meta)) {
+            properties.load(in);
+
+            if (checkFile && (Long.parseLong(properties.getProperty("size", "-1")) != file.length()
+                    || Long.parseLong(properties.getProperty("modified", "-1")) != file.lastModified())) {
+                return null;
+            }
+            return new CachedMetadata(properties.getProperty("etag"), Long.parseLong(properties.getProperty("lastModified", "0")));
+        } catch (IOException | NumberFormatException e) {
+            LOGGER.debug("Could not read " + meta, e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the validators of a file which has just been downloaded. Nothing is stored if the server
+     * sent no validators.
+     *
+     * @param file
+     * @param eTag
+     * @param lastModified
+     */
+    static void write(File file, String eTag, long lastModified) {
+        write(file, eTag, lastModified, true);
+    }
+
+    /**
+     * Stores the validators of the response a partially downloaded file is written from.
+     *
+     * @param part
+     * @param eTag
+     * @param lastModified
+     */
+    static void writePart(File part, String eTag, long lastModified) {
+        write(part, eTag, lastModified, false);
+    }
+
+    /**
+     * Deletes the stored validators of a file.
+     *
+     * @param file
+     */
+    static void delete(File file) {
+        new File(file.getPath() + SUFFIX).delete();
+    }
+
+    private static void write(File file, String eTag, long lastModified, boolean checkFile) {
+        File meta = new File(file.getPath() + SUFFIX);
+
+        if (eTag == null && lastModified <= 0) {
+            meta.delete();
+            return;
+        }
+
+        Properties properties = new Properties();
+        if (eTag != null) {
+            properties.setProperty("etag", eTag);
+        }
+        properties.setProperty("lastModified", Long.toString(lastModified));
+        if (checkFile) {
+            properties.setProperty("size", Long.toString(file.length()));
+            properties.setProperty("modified", Long.toString(file.lastModified()));
+        }
+
+        try (OutputStream out = new FileOutputStream(meta)) {
+            properties.store(out, null);
+        } catch (IOException e) {
+            LOGGER.warn("Could not write " + meta, e);
+            meta.delete();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package de.craften.craftenlauncher.logic.download;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Circuit breaker of a single host. After several failures in a row the traffic to the host is
+ * paused. When the pause is over a single request probes the host, all others wait for its
+ * result. A failed probe pauses the host again for twice as long.
+ */
+class CircuitBreaker {
+    private static final Logger LOGGER = LogManager.getLogger(CircuitBreaker.class);
+    private static final int FAILURE_THRESHOLD = 5;
+    private static final long MIN_PAUSE = 5 * 1000;
+    private static final long MAX_PAUSE = 2 * 60 * 1000;
+    private static final long PROBE_TIMEOUT = 60 * 1000;
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String mHost;
+    private State mState = State.CLOSED;
+    private int mFailures;
+    private long mPause = MIN_PAUSE;
+    private long mOpenUntil;
+    private boolean mProbing;
+    private long mProbeStarted;
+
+    CircuitBreaker(String host) {
+        this.mHost = host;
+    }
+
+    /**
+     * Blocks while the traffic to the host is paused.
+     *
+     * @throws InterruptedException
+     */
+    synchronized void await() throws InterruptedException {
+        while (true) {
+            if (mState == State.CLOSED) {
+                return;
+            }
+
+            long remaining = mOpenUntil - System.currentTimeMillis();
+            if (mState == State.OPEN && remaining > 0) {
+                wait(remaining);
+                continue;
+            }
+
+            if (mState == State.OPEN) {
+                LOGGER.info("Probing " + mHost + " again");
+                mState = State.HALF_OPEN;
+            }
+
+            // a probe whose result is never reported must not block the host forever
+            long probeRemaining = mProbeStarted + PROBE_TIMEOUT - System.currentTimeMillis();
+            if (mProbing && probeRemaining <= 0) {
+                LOGGER.warn("Probe of " + mHost + " did not report a result, probing again");
+            }
+
+            if (!mProbing || probeRemaining <= 0) {
+                mProbing = true;
+                mProbeStarted = System.currentTimeMillis();
+                return;
+            }
+            wait(probeRemaining);
+        }
+    }
+
+    /**
+     * @return true if the host was paused before
+     */
+    synchronized boolean onSuccess() {
+        mFailures = 0;
+
+        if (mState == State.CLOSED) {
+            return false;
+        }
+
+        LOGGER.info("Traffic to " + mHost + " resumed");
+        mState = State.CLOSED;
+        mPause = MIN_PAUSE;
+        mProbing = false;
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * @return the pause in milliseconds if the host has been paused, 0 otherwise
+     */
+    synchronized long onFailure() {
+        mFailures++;
+
+        if (mState == State.HALF_OPEN) {
+            mPause = Math.min(MAX_PAUSE, mPause * 2);
+        } else if (mState == State.OPEN || mFailures < FAILURE_THRESHOLD) {
+            return 0;
+        }
+
+        LOGGER.warn("Pausing traffic to " + mHost + " for " + mPause / 1000 + " s after " + mFailures + " failures");
+        mState = State.OPEN;
+        mOpenUntil = System.currentTimeMillis() + mPause;
+        mProbing = false;
+        notifyAll();
+        return mPause;
+    }
+
+    /**
+     * Called if a request ended without a result, i.e. it was aborted. Lets another request probe the host.
+     */
+    synchronized void onAborted() {
+        if (mProbing) {
+            mProbing = false;
+            notifyAll();
+        }
+    }
+
+    synchronized State getState() {
+        return mState;
+    }
+}
@@ -0,0 +1,133 @@
+package de.craften.craftenlauncher.logic.download;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Limits the number of downloads running at the same time and adapts the limit while the
+ * downloads are running (additive increase, multiplicative decrease).
+ * <p>
+ * After every window of completed downloads the throughput, error rate and latency of that
+ * window are compared with the previous one. As long as the throughput keeps up and there are
+ * no errors, one more download may run. Errors or a strongly rising latency halve the limit.
+ */
+public class ConcurrencyLimiter {
+    private static final Logger LOGGER = LogManager.getLogger(ConcurrencyLimiter.class);
+    private static final double MAX_ERROR_RATE = 0.05;
+    private static final double MAX_LATENCY_FACTOR = 3.0;
+    private static final double MIN_THROUGHPUT_FACTOR = 0.9;
+
+    private final String mName;
+    private final int mMin, mMax;
+    private int mLimit;
+    private int mInFlight;
+
+    private int mWindowCompleted, mWindowErrors;
+    private long mWindowBytes, mWindowLatency, mWindowStart;
+    private double mLastThroughput;
+    private double mBaseLatency = Double.MAX_VALUE;
+
+    /**
+     * @param name    name used for logging
+     * @param initial limit to start with
+     * @param min     lower bound of the limit
+     * @param max     upper bound of the limit
+     */
+    public ConcurrencyLimiter(String name, int initial, int min, int max) {
+        this.mName = name;
+        this.mMin = min;
+        this.mMax = max;
+        this.mLimit = Math.max(min, Math.min(max, initial));
+        this.mWindowStart = System.nanoTime();
+
+        LOGGER.info(mName + " concurrency: " + mLimit);
+    }
+
+    /**
+     * Blocks until another download may be started.
+     *
+     * @throws InterruptedException
+     */
+    public synchronized void acquire() throws InterruptedException {
+        while (mInFlight >= mLimit) {
+            wait();
+        }
+        mInFlight++;
+    }
+
+    /**
+     * Reports a finished download and frees its slot.
+     *
+     * @param success       true if the download succeeded
+     * @param latencyMillis time the download took
+     * @param bytes         number of bytes transferred
+     */
+    public synchronized void release(boolean success, long latencyMillis, long bytes) {
+        mInFlight--;
+
+        mWindowCompleted++;
+        mWindowLatency += latencyMillis;
+        if (success) {
+            mWindowBytes += bytes;
+        } else {
+            mWindowErrors++;
+        }
+
+        if (mWindowCompleted >= Math.max(10, mLimit * 2)) {
+            adapt();
+        }
+
+        notifyAll();
+    }
+
+    private void adapt() {
+        long now = System.nanoTime();
+        double seconds = Math.max(0.001, (now - mWindowStart) / 1e9);
+        double throughput = mWindowBytes / seconds;
+        double errorRate = (double) mWindowErrors / mWindowCompleted;
+        double latency = (double) mWindowLatency / mWindowCompleted;
+        int oldLimit = mLimit;
+
+        mBaseLatency = Math.min(mBaseLatency, latency);
+
+        if (errorRate > MAX_ERROR_RATE || latency > mBaseLatency * MAX_LATENCY_FACTOR) {
+            mLimit = Math.max(mMin, mLimit / 2);
+        } else if (throughput >= mLastThroughput * MIN_THROUGHPUT_FACTOR) {
+            mLimit = Math.min(mMax, mLimit + 1);
+        }
+
+        if (mLimit != oldLimit) {
+            LOGGER.info(String.format("%s concurrency: %d -> %d (%.0f KB/s, %.0f%% errors, %.0f ms latency)",
+                    mName, oldLimit, mLimit, throughput / 1024, errorRate * 100, latency));
+        }
+
+        mLastThroughput = throughput;
+        mWindowStart = now;
+        mWindowCompleted = 0;
+        mWindowErrors = 0;
+        mWindowBytes = 0;
+        mWindowLatency = 0;
+    }
+
+    /**
+     * Returns the number of downloads currently allowed to run at the same time.
+     *
+     * @return
+     */
+    public synchronized int getLimit() {
+        return mLimit;
+    }
+
+    /**
+     * Returns the number of downloads currently running.
+     *
+     * @return
+     */
+    public synchronized int getInFlight() {
+        return mInFlight;
+    }
+
+    public int getMax() {
+        return mMax;
+    }
+}
@@ -0,0 +1,60 @@
+package de.craften.craftenlauncher.logic.download;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+
+/**
+ * Channel which updates a message digest and counts the bytes while they are read from the
+ * wrapped channel, so a download can be verified without reading the file again.
+ */
+class DigestingChannel implements ReadableByteChannel {
+    private final ReadableByteChannel mChannel;
+    private final MessageDigest mDigest;
+    private long mLength;
+
+    /**
+     * @param channel channel to read from
+     * @param digest  digest to update, may already contain data
+     */
+    DigestingChannel(ReadableByteChannel channel, MessageDigest digest) {
+        this.mChannel = channel;
+        this.mDigest = digest;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        int start = dst.position();
+        int read = mChannel.read(dst);
+
+        if (read > 0) {
+            ByteBuffer readBytes = dst.duplicate();
+            readBytes.position(start);
+            readBytes.limit(start + read);
+            mDigest.update(readBytes);
+            mLength += read;
+        }
+
+        return read;
+    }
+
+    /**
+     * Returns the number of bytes read through this channel.
+     *
+     * @return
+     */
+    public long getLength() {
+        return mLength;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return mChannel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mChannel.close();
+    }
+}
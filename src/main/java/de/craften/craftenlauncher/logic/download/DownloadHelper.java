@@ -2,19 +2,36 @@ package de.craften.craftenlauncher.logic.download;
 
 import de.craften.craftenlauncher.exception.CraftenDownloadException;
 import de.craften.craftenlauncher.logic.vm.DownloadVM;
+import de.craften.util.HashHelper;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.*;
 import java.net.HttpURLConnection;
-import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
 public class DownloadHelper {
     private static final Logger LOGGER = LogManager.getLogger(DownloadHelper.class);
-    final static int BUFFER_SIZE = 1024;
+    final static int BUFFER_SIZE = 64 * 1024;
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+    private static final int MAX_TRIES = 3;
     private static volatile boolean force = false;
+    private static volatile long segmentThreshold = 4 * 1024 * 1024;
+    private static volatile long deadline = 10 * 60 * 1000;
+    private static volatile long minThroughput = 1024;
+    private static volatile HedgingPolicy hedging;
+    private static volatile InstallJournal journal;
+    private static final AtomicLong pendingBytes = new AtomicLong();
     private static DownloadVM dwvm;
 
     /**
@@ -33,47 +50,162 @@ public class DownloadHelper {
     /**
      * Allgemeine Form der Download Funktion.
      * Benutzt ein Downloader Objekt um zu bestimmen wohin die Daten gespeichert werden soll.
+     * Kann der Downloader einen abgebrochenen Download fortsetzen, wird nur der fehlende Teil angefragt.
+     * Wartet, solange der Host nach mehreren Fehlern pausiert wird.
      *
      * @param downloader downloader
+     * @return true if the whole response was transferred
      */
-    private static void download(Downloader downloader) {
+    static boolean download(Downloader downloader) {
+        String url = downloader.getHelper().getFileAddress();
+        RetryPolicy policy = RetryPolicy.getDefault();
         HttpURLConnection uCon = null;
         InputStream is = null;
+        int responseCode = -1;
+        boolean completed = false;
 
         try {
-            URL Url = new URL(downloader.getHelper().getFileAddress());
-            uCon = (HttpURLConnection) Url.openConnection();
-            downloader.setContentLength(uCon.getContentLength());
-            is = uCon.getInputStream();
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Download cancelled: " + downloader.getFilename());
+            }
+            policy.awaitHost(url);
 
-            byte[] buf = new byte[BUFFER_SIZE];
-            int ByteRead;
-            int dlKB = 0;
+            uCon = HttpTransport.open(url);
+            downloader.setConnection(uCon);
+            downloader.prepare(uCon);
 
-            while ((ByteRead = is.read(buf)) != -1) {
-                downloader.appendBytes(buf, ByteRead);
-                dlKB++;
+            long offset = downloader.getResumeOffset();
+            if (offset > 0) {
+                uCon.setRequestProperty("Range", "bytes=" + offset + "-");
+            }
 
-                //TODO: Workaround dwvm fr�her setzen
-                if (dwvm != null) {
-                    if (dlKB == 10) {
-                        dwvm.addDownloadedKByte(10);
-                        dlKB = 0;
-                    }
+            responseCode = uCon.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                downloader.notModified();
+                completed = true;
+                policy.onSuccess(url);
+                return true;
+            } else if (offset > 0 && responseCode == HttpURLConnection.HTTP_PARTIAL) {
+                LOGGER.info("Resuming download of " + downloader.getFilename() + " at " + offset + " bytes");
+                downloader.setContentLength(getTotalLength(uCon, offset));
+                downloader.start(offset);
+            } else if (responseCode == HTTP_RANGE_NOT_SATISFIABLE) {
+                throw new IOException("Range not satisfiable, discarding partial file of " + downloader.getFilename());
+            } else {
+                if (offset > 0) {
+                    LOGGER.info("File changed on the server, downloading " + downloader.getFilename() + " again");
                 }
+                downloader.setContentLength(uCon.getContentLengthLong());
+                downloader.start(0);
+            }
+
+            is = uCon.getInputStream();
+            ReadableByteChannel channel = downloader.wrap(watch(Channels.newChannel(is), downloader.getFilename()));
+
+            long bytesRead;
+
+            while ((bytesRead = downloader.transfer(channel)) != -1) {
+                addDownloadedBytes(bytesRead);
             }
 
             downloader.finished();
+            completed = true;
+            policy.onSuccess(url);
         } catch (Exception e) {
-            LOGGER.error("Could not download file to: " + downloader.getFilename(), e);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+
+            if (downloader.isAborted() || Thread.currentThread().isInterrupted()) {
+                LOGGER.debug("Download of " + downloader.getFilename() + " aborted");
+                policy.onAborted(url);
+            } else {
+                LOGGER.error("Could not download file to: " + downloader.getFilename(), e);
+                reportFailure(url, responseCode);
+            }
+            downloader.failed(responseCode == HTTP_RANGE_NOT_SATISFIABLE);
         } finally {
-            try {
-                if (is != null) {
-                    is.close();
-                }
-                if (uCon != null) {
-                    uCon.disconnect();
+            if (completed) {
+                HttpTransport.release(uCon, is);
+            } else {
+                closeQuietly(is);
+                HttpTransport.abort(uCon);
+            }
+        }
+
+        return completed;
+    }
+
+    /**
+     * Reads the complete length of a file from the Content-Range header of a partial response.
+     *
+     * @param uCon
+     * @param offset
+     * @return complete length or -1 if unknown
+     */
+    private static long getTotalLength(HttpURLConnection uCon, long offset) {
+        String range = uCon.getHeaderField("Content-Range");
+
+        if (range != null && range.lastIndexOf('/') != -1) {
+            String total = range.substring(range.lastIndexOf('/') + 1).trim();
+            if (!total.equals("*")) {
+                try {
+                    return Long.parseLong(total);
+                } catch (NumberFormatException e) {
+                    LOGGER.warn("Invalid Content-Range: " + range);
                 }
+            }
+        }
+
+        long remaining = uCon.getContentLengthLong();
+        return remaining == -1 ? -1 : offset + remaining;
+    }
+
+    /**
+     * Guards the channel of a response by the deadline and the minimal throughput.
+     *
+     * @param channel
+     * @param name    name of the file used in error messages
+     * @return
+     */
+    static ReadableByteChannel watch(ReadableByteChannel channel, String name) {
+        return new WatchdogChannel(channel, name, deadline, minThroughput);
+    }
+
+    /**
+     * Adds transferred bytes to the download progress. Whole kilobytes are passed on to the
+     * DownloadVM, the remainder is kept for the next call.
+     *
+     * @param bytes
+     */
+    static void addDownloadedBytes(long bytes) {
+        long pending = pendingBytes.addAndGet(bytes);
+        long kb = pending / 1024;
+
+        //TODO: Workaround dwvm fr�her setzen
+        if (dwvm != null && kb > 0 && pendingBytes.compareAndSet(pending, pending - kb * 1024)) {
+            dwvm.addDownloadedKByte((int) kb);
+        }
+    }
+
+    /**
+     * Client errors are answered by a working host, everything else counts against the host.
+     *
+     * @param url
+     * @param responseCode response code or -1 if the host did not answer
+     */
+    private static void reportFailure(String url, int responseCode) {
+        if (responseCode >= 400 && responseCode < 500) {
+            RetryPolicy.getDefault().onSuccess(url);
+        } else {
+            RetryPolicy.getDefault().onFailure(url);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
             } catch (IOException e) {
                 LOGGER.error("Could not close download stream", e);
             }
@@ -145,6 +277,154 @@ public class DownloadHelper {
         return downloadFileToDisk(helper, false);
     }
 
+    /**
+     * Downloads a File to Disk and verifies it by the given SHA-1 checksum. The file is specified by the url
+     * and will be downloaded into a file specified by file. An existing file is checked locally and only
+     * downloaded again if the checksum does not match.
+     *
+     * @param url
+     * @param file
+     * @param sha1 expected SHA-1 checksum as hex string
+     * @param size expected size in bytes or -1 if unknown
+     * @return
+     * @throws CraftenDownloadException
+     */
+    public static String downloadFileToDiskWithHash(String url, String file, String sha1, long size) throws CraftenDownloadException {
+        FileHelper helper = new FileHelper(url, file);
+        helper.setExpectedHash(sha1, size);
+
+        return downloadFileToDisk(helper, true);
+    }
+
+    /**
+     * Downloads a File to Disk and verifies it by the given SHA-1 checksum. The file is specified by the url
+     * and will be downloaded into a file specified by file and destinationDir as path.
+     *
+     * @param fAddress
+     * @param destinationDir
+     * @param myFileName
+     * @param sha1           expected SHA-1 checksum as hex string
+     * @param size           expected size in bytes or -1 if unknown
+     * @return Dateiname, unter dem der Download tatsaechlich gespeichert wurde
+     * @throws CraftenDownloadException
+     */
+    public static String downloadFileToDiskWithHash(String fAddress, String destinationDir, String myFileName,
+                                                    String sha1, long size) throws CraftenDownloadException {
+        FileHelper helper = new FileHelper(fAddress, destinationDir, myFileName);
+        helper.setExpectedHash(sha1, size);
+
+        return downloadFileToDisk(helper, true);
+    }
+
+    /**
+     * Downloads a metadata file like the version list, a version file or an asset index. If the file
+     * was downloaded before, the server is asked with the stored ETag and Last-Modified date whether it
+     * changed, an unchanged file only costs a 304 response. If the server can not be reached, an
+     * existing local file is used.
+     *
+     * @param url
+     * @param file
+     * @return true if the file was downloaded, false if the local file is used
+     * @throws CraftenDownloadException if the file could not be downloaded and there is no local file
+     */
+    public static boolean downloadMetadata(String url, String file) throws CraftenDownloadException {
+        File target = new File(file);
+        CachedMetadata cached = force ? null : CachedMetadata.read(target);
+        FileHelper helper = new FileHelper(url, file);
+
+        target.getParentFile().mkdirs();
+
+        for (int attempt = 0; ; attempt++) {
+            MetadataDownloader downloader = new MetadataDownloader(helper, cached);
+
+            if (download(downloader)) {
+                if (!downloader.isModified()) {
+                    LOGGER.info(target.getName() + " not modified");
+                    return false;
+                }
+
+                long expected = downloader.getContentLength();
+                if (expected < 0 || downloader.getLength() == expected) {
+                    try {
+                        moveIntoPlace(downloader.getPartFile(), target);
+                    } catch (IOException e) {
+                        downloader.getPartFile().delete();
+                        throw new CraftenDownloadException("Could not replace " + file, e);
+                    }
+
+                    CachedMetadata.write(target, downloader.getETag(), downloader.getLastModified());
+                    LOGGER.info("File download finished: " + target.getName());
+                    return true;
+                }
+                downloader.getPartFile().delete();
+            }
+
+            if (target.isFile()) {
+                LOGGER.warn("Could not download " + url + ", using the local file");
+                return false;
+            }
+
+            if (attempt + 1 >= MAX_TRIES || !RetryPolicy.getDefault().tryRetry()) {
+                throw new CraftenDownloadException("Could not download " + url);
+            }
+
+            try {
+                RetryPolicy.getDefault().awaitRetry(attempt, target.getName());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CraftenDownloadException("Interrupted while downloading " + url);
+            }
+        }
+    }
+
+    /**
+     * Places an already verified file at another path, i.e. an asset object which is needed under
+     * several names. A hard link is created if the file system supports it, otherwise the file is
+     * copied. A valid file at the target path is kept.
+     *
+     * @param source verified file
+     * @param target path the file is needed at
+     * @param sha1   SHA-1 checksum of the file as hex string
+     * @param size   size of the file in bytes or -1 if unknown
+     * @throws CraftenDownloadException if the file could neither be linked nor copied
+     */
+    public static void linkFile(File source, File target, String sha1, long size) throws CraftenDownloadException {
+        InstallJournal journal = DownloadHelper.journal;
+
+        if (!force && target.exists()) {
+            if (journal != null && journal.isVerified(target, sha1, size)) {
+                return;
+            }
+            if ((size < 0 || target.length() == size) && HashHelper.isSha1Equal(target, sha1)) {
+                if (journal != null) {
+                    journal.record(target, sha1);
+                }
+                return;
+            }
+        }
+
+        File temp = new File(target.getPath() + ".link");
+        target.getParentFile().mkdirs();
+
+        try {
+            Files.deleteIfExists(temp.toPath());
+            try {
+                Files.createLink(temp.toPath(), source.toPath());
+            } catch (IOException | UnsupportedOperationException e) {
+                LOGGER.debug("Could not link " + target + ", copying it: " + e);
+                Files.copy(source.toPath(), temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            moveIntoPlace(temp, target);
+        } catch (IOException e) {
+            temp.delete();
+            throw new CraftenDownloadException("Could not place " + source + " at " + target, e);
+        }
+
+        if (journal != null) {
+            journal.record(target, sha1);
+        }
+    }
+
     /**
      * @param fileHelper
      * @param shouldCheck
@@ -190,55 +470,260 @@ public class DownloadHelper {
 
     /**
      * Checks if a file is okey by checking it's existence, length and if force-downloading is activated.
+     * If a checksum is known, the file is verified locally without asking the server.
      *
      * @param fileHelper
      * @param shouldCheck
      * @return
      */
     private static boolean shouldFileBeDownloaded(FileHelper fileHelper, boolean shouldCheck) {
-        String destinationDir = fileHelper.getDestinationDir();
         String fAddress = fileHelper.getFileAddress();
-        String fileName = fileHelper.getLocalFileName();
+        String path = fileHelper.getLocalPath();
+        File file = new File(path);
+        InstallJournal journal = DownloadHelper.journal;
+
+        boolean exists = file.exists();
 
-        boolean exists = (new File(destinationDir
-                + System.getProperty("file.separator") + fileName)).exists();
+        if (force || !exists) {
+            return true;
+        }
+
+        if (journal != null && journal.isVerified(file, fileHelper.getExpectedHash(), fileHelper.getExpectedSize())) {
+            return false;
+        }
+
+        if (fileHelper.hasExpectedHash()) {
+            boolean valid = isHashEqual(fileHelper);
+            if (!valid) {
+                LOGGER.warn("Checksum mismatch, downloading again: " + path);
+            } else if (journal != null) {
+                journal.record(file, fileHelper.getExpectedHash());
+            }
+            return !valid;
+        }
 
-        return force || !exists || (shouldCheck && exists && !isLengthEqual(fAddress, destinationDir
-                + System.getProperty("file.separator") + fileName));
+        if (!shouldCheck) {
+            return false;
+        }
+
+        boolean equal = isLengthEqual(fAddress, path);
+        if (equal && journal != null) {
+            journal.record(file, null);
+        }
+        return !equal;
+    }
+
+    /**
+     * Checks the local file against the expected size and SHA-1 checksum of the file helper.
+     *
+     * @param fileHelper
+     * @return true if the file is valid
+     */
+    private static boolean isHashEqual(FileHelper fileHelper) {
+        return isHashEqual(new File(fileHelper.getLocalPath()), fileHelper);
+    }
+
+    private static boolean isHashEqual(File file, FileHelper fileHelper) {
+        if (fileHelper.getExpectedSize() >= 0 && file.length() != fileHelper.getExpectedSize()) {
+            return false;
+        }
+
+        return HashHelper.isSha1Equal(file, fileHelper.getExpectedHash());
     }
 
     /**
      * Versucht die Datei herunterzuladen. Checkt dabei die vorhandene + uebertragene File-Groesse.
-     * Falls diese nicht gleich sind, wird versuch die Datei nochmals herunterzuladen.
+     * Falls diese nicht gleich sind, wird versuch die Datei nochmals herunterzuladen. Zwischen den
+     * Versuchen wird nach der {@link RetryPolicy} gewartet, ist deren Budget aufgebraucht, wird abgebrochen.
+     * Die Datei wird zuerst in eine .part Datei geschrieben, ein abgebrochener Download wird beim
+     * naechsten Versuch (auch nach einem Neustart) fortgesetzt, sofern der Server per If-Range
+     * bestaetigt, dass sich die Datei nicht geaendert hat. Erst die vollstaendige Datei wird
+     * an ihren Platz verschoben.
      *
      * @param fileHelper
      * @throws IOException if downloading the file fails
      */
     private static void tryDownloadFile(FileHelper fileHelper) throws IOException {
         boolean downloadSucceeded = false;
-        int triesLeft = 3;
+        int attempt = 0;
 
-        while (!downloadSucceeded && triesLeft > 0) {
+        while (true) {
             FileDownloader downloader = new FileDownloader(fileHelper);
-            download(downloader);
+            File part = downloader.getPartFile();
+            long threshold = segmentThreshold;
+            boolean segmented = false;
+            boolean transferred = false;
+            HedgedDownload hedged = null;
+
+            if (SegmentedDownloader.isCandidate(fileHelper, part, threshold)) {
+                SegmentedDownloader segmentedDownloader = new SegmentedDownloader(fileHelper, part);
+
+                if (segmentedDownloader.probe(threshold)) {
+                    // a failed segmented download is resumed by the next try, unless the file changed
+                    transferred = segmentedDownloader.download();
+                    segmented = transferred || !segmentedDownloader.hasChanged();
+                    downloader.setContentLength(segmentedDownloader.getContentLength());
+                }
+            }
 
-            if (downloader.getContentLength() != -1) {
-                long fileSize = getFileSize(fileHelper.getDestinationDir() + System.getProperty("file.separator") + fileHelper.getLocalFileName());
-                if (fileSize == downloader.getContentLength()) {
-                    downloadSucceeded = true;
-                } else {
-                    LOGGER.warn("File size should be " + fileSize + " but was " + downloader.getContentLength());
-                    downloadSucceeded = false;
+            if (!segmented && isHedgeCandidate(fileHelper, part, threshold)) {
+                hedged = new HedgedDownload(hedging, downloader);
+                FileDownloader winner = hedged.download();
+                transferred = winner != null;
+
+                if (transferred) {
+                    downloader = winner;
+                    part = winner.getPartFile();
+                }
+            } else if (!segmented) {
+                transferred = download(downloader);
+            }
+
+            if (!transferred) {
+                LOGGER.warn("Download of " + fileHelper.getLocalFileName() + " interrupted at " + part.length() + " bytes");
+                downloadSucceeded = false;
+            } else if (!isLengthValid(downloader, segmented)) {
+                if (getLength(downloader, segmented) > getExpectedLength(downloader)) {
+                    downloader.deletePartFile();
                 }
+                downloadSucceeded = false;
+            } else if (fileHelper.hasExpectedHash() && !isChecksumValid(downloader, segmented)) {
+                LOGGER.warn("Checksum of " + fileHelper.getLocalFileName() + " should be " + fileHelper.getExpectedHash());
+                downloader.deletePartFile();
+                downloadSucceeded = false;
             } else {
+                moveIntoPlace(part, new File(fileHelper.getLocalPath()));
+                CachedMetadata.delete(part);
+                record(downloader, segmented);
                 downloadSucceeded = true;
             }
 
-            triesLeft--;
+            if (downloadSucceeded || ++attempt >= MAX_TRIES) {
+                break;
+            }
+
+            if (hedged != null) {
+                // the aborted request may still write to the part file the next try resumes
+                hedged.awaitRequests();
+            }
+
+            if (!RetryPolicy.getDefault().tryRetry()) {
+                LOGGER.warn("Retry budget exhausted, not retrying " + fileHelper.getLocalFileName());
+                break;
+            }
+
+            try {
+                RetryPolicy.getDefault().awaitRetry(attempt - 1, fileHelper.getLocalFileName());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to retry " + fileHelper.getLocalFileName());
+            }
+        }
+
+        if (!downloadSucceeded) {
+            throw new IOException("Download failed: " + fileHelper.getLocalFileName());
+        }
+    }
+
+    /**
+     * Records a file which has just been moved into place in the install journal.
+     *
+     * @param downloader
+     * @param segmented  true if the file was downloaded in segments, no checksum was computed then
+     */
+    private static void record(FileDownloader downloader, boolean segmented) {
+        InstallJournal journal = DownloadHelper.journal;
+        FileHelper fileHelper = downloader.getHelper();
+
+        if (journal != null) {
+            String sha1 = fileHelper.hasExpectedHash() ? fileHelper.getExpectedHash() : (segmented ? null : downloader.getSha1());
+            journal.record(new File(fileHelper.getLocalPath()), sha1);
+        }
+    }
+
+    /**
+     * Returns true if the download may be hedged. Only small files with a known checksum are hedged,
+     * a duplicate request for them is cheap and the checksum tells which copy is valid.
+     *
+     * @param fileHelper
+     * @param part
+     * @param threshold size from which on files are downloaded in segments
+     * @return
+     */
+    private static boolean isHedgeCandidate(FileHelper fileHelper, File part, long threshold) {
+        if (hedging == null || !fileHelper.hasExpectedHash() || fileHelper.getExpectedSize() < 0 || part.length() > 0) {
+            return false;
+        }
+
+        return threshold <= 0 || fileHelper.getExpectedSize() < threshold;
+    }
+
+    /**
+     * Returns the length of the downloaded part file. After a sequential download the bytes counted
+     * while writing are used, a segmented download is measured on disk.
+     *
+     * @param downloader
+     * @param segmented
+     * @return
+     */
+    private static long getLength(FileDownloader downloader, boolean segmented) {
+        return segmented ? downloader.getPartFile().length() : downloader.getLength();
+    }
+
+    /**
+     * Returns the length announced by the server or, if unknown, the one from the metadata.
+     *
+     * @param downloader
+     * @return expected length or -1 if unknown
+     */
+    private static long getExpectedLength(FileDownloader downloader) {
+        if (downloader.getContentLength() != -1) {
+            return downloader.getContentLength();
+        }
+        return downloader.getHelper().getExpectedSize();
+    }
+
+    private static boolean isLengthValid(FileDownloader downloader, boolean segmented) {
+        long expected = getExpectedLength(downloader);
+        long length = getLength(downloader, segmented);
+
+        if (expected != -1 && length != expected) {
+            LOGGER.warn("File size should be " + expected + " but was " + length);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Compares the checksum computed while downloading with the expected one. Segmented downloads
+     * are written out of order, their part file has to be read again.
+     *
+     * @param downloader
+     * @param segmented
+     * @return
+     */
+    private static boolean isChecksumValid(FileDownloader downloader, boolean segmented) {
+        FileHelper fileHelper = downloader.getHelper();
+
+        if (segmented) {
+            return isHashEqual(downloader.getPartFile(), fileHelper);
         }
+        return fileHelper.getExpectedHash().equalsIgnoreCase(downloader.getSha1());
+    }
 
-        if (triesLeft == 0) {
-            LOGGER.warn("Needed all three tries and download " + (downloadSucceeded ? "succeeded" : "failed"));
+    /**
+     * Replaces the target with the completely downloaded file. Uses an atomic move if the
+     * file system supports it.
+     *
+     * @param source
+     * @param target
+     * @throws IOException
+     */
+    private static void moveIntoPlace(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
         }
     }
 
@@ -266,16 +751,11 @@ public class DownloadHelper {
      * @return
      */
     private static boolean isLengthEqual(String url, String filename) {
-        URL Url;
         HttpURLConnection uCon = null;
 
         try {
-            Url = new URL(url);
-            uCon = (HttpURLConnection) Url.openConnection();
-
-            uCon.setRequestMethod("HEAD");
+            uCon = HttpTransport.open(url, "HEAD");
             int contentLength = uCon.getContentLength();
-            uCon.disconnect();
 
             long fileSize = getFileSize(filename);
             if (fileSize >= 0 && contentLength == fileSize) {
@@ -285,7 +765,11 @@ public class DownloadHelper {
             LOGGER.error("Could not get HTTP header", e);
         } finally {
             if (uCon != null) {
-                uCon.disconnect();
+                try {
+                    HttpTransport.release(uCon, uCon.getResponseCode() < 400 ? uCon.getInputStream() : null);
+                } catch (IOException e) {
+                    HttpTransport.abort(uCon);
+                }
             }
         }
         return false;
@@ -304,6 +788,65 @@ public class DownloadHelper {
         return force;
     }
 
+    /**
+     * Sets the size from which on files are downloaded in several parallel segments, if the server
+     * supports range requests. 0 disables segmented downloads.
+     *
+     * @param bytes threshold in bytes
+     */
+    public static void setSegmentThreshold(long bytes) {
+        DownloadHelper.segmentThreshold = bytes;
+    }
+
+    public static long getSegmentThreshold() {
+        return segmentThreshold;
+    }
+
+    /**
+     * Sets the maximal duration of a single request. A download which takes longer is aborted
+     * and continued on a new connection.
+     *
+     * @param millis deadline in milliseconds, 0 disables the deadline
+     */
+    public static void setDeadline(long millis) {
+        DownloadHelper.deadline = millis;
+    }
+
+    public static long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Sets the minimal throughput of a download. A connection that stays below it for several
+     * seconds is aborted and the download is continued on a new connection.
+     *
+     * @param bytesPerSecond minimal throughput, 0 disables the stall detection
+     */
+    public static void setMinThroughput(long bytesPerSecond) {
+        DownloadHelper.minThroughput = bytesPerSecond;
+    }
+
+    public static long getMinThroughput() {
+        return minThroughput;
+    }
+
+    /**
+     * Enables hedged requests for small files with a known checksum: a request slower than the 95th
+     * percentile of the recent ones gets a duplicate, at most for 5% of all requests.
+     *
+     * @param enabled
+     */
+    public static void setHedging(boolean enabled) {
+        DownloadHelper.hedging = enabled ? new HedgingPolicy(0.95, 0.05, 10) : null;
+    }
+
+    /**
+     * @return the hedging policy or null if hedging is disabled
+     */
+    public static HedgingPolicy getHedgingPolicy() {
+        return hedging;
+    }
+
     /**
      * Funktion um Jars zu entpacken.
      *
@@ -344,6 +887,19 @@ public class DownloadHelper {
         }
     }
 
+    /**
+     * Sets the journal used to skip the check of files that did not change since they were verified.
+     *
+     * @param journal journal or null to check every file
+     */
+    public static void setJournal(InstallJournal journal) {
+        DownloadHelper.journal = journal;
+    }
+
+    public static InstallJournal getJournal() {
+        return journal;
+    }
+
     /**
      * Setzt die Download ViewModel
      *
@@ -351,6 +907,7 @@ public class DownloadHelper {
      */
     public static void setDownloadHelper(DownloadVM vm) {
         dwvm = vm;
+        RetryPolicy.getDefault().setDownloadVM(vm);
     }
 }
 
@@ -360,8 +917,10 @@ public class DownloadHelper {
  * @author rebeard
  */
 abstract class Downloader {
-    private int contentLength;
+    private long contentLength;
     private FileHelper helper;
+    private volatile HttpURLConnection connection;
+    private volatile boolean aborted;
 
     public Downloader(FileHelper helper) {
         contentLength = -1;
@@ -372,11 +931,14 @@ abstract class Downloader {
         return helper;
     }
 
-    public void setContentLength(int contentLength) {
+    public void setContentLength(long contentLength) {
         this.contentLength = contentLength;
     }
 
-    public int getContentLength() {
+    /**
+     * @return the complete length of the file or -1 if unknown
+     */
+    public long getContentLength() {
         return contentLength;
     }
 
@@ -384,7 +946,94 @@ abstract class Downloader {
         return helper.getLocalFileName();
     }
 
-    public abstract void appendBytes(byte[] buffer, int byteRead) throws IOException;
+    /**
+     * Remembers the connection of the running request, so it can be aborted from another thread.
+     *
+     * @param connection
+     * @throws IOException if the download has already been aborted
+     */
+    public void setConnection(HttpURLConnection connection) throws IOException {
+        this.connection = connection;
+
+        if (aborted) {
+            throw new IOException("Download aborted: " + getFilename());
+        }
+    }
+
+    /**
+     * Aborts the running request by closing its connection, a blocked read fails immediately.
+     */
+    public void abort() {
+        aborted = true;
+
+        HttpURLConnection current = connection;
+        if (current != null) {
+            current.disconnect();
+        }
+    }
+
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    HttpURLConnection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Method that is called before the request is sent, i.e. to add headers.
+     *
+     * @param connection
+     */
+    public void prepare(HttpURLConnection connection) {
+    }
+
+    /**
+     * Method that is called instead of {@link #start(long)} if the server answered a conditional
+     * request with 304 Not Modified.
+     *
+     * @throws IOException if the downloader did not send a conditional request
+     */
+    public void notModified() throws IOException {
+        throw new IOException("Unexpected response 304 Not Modified: " + getFilename());
+    }
+
+    /**
+     * Returns the number of bytes which are already available and do not need to be requested again.
+     *
+     * @return
+     */
+    public long getResumeOffset() {
+        return 0;
+    }
+
+    /**
+     * Method that is called once the server responded, before the first bytes are appended.
+     *
+     * @param offset position the response starts at, 0 if the server sends the whole file
+     * @throws IOException if something went wrong
+     */
+    public void start(long offset) throws IOException {
+    }
+
+    /**
+     * Wraps the channel of the response before the transfer starts, i.e. to compute a checksum on the fly.
+     *
+     * @param in response body
+     * @return channel to transfer from
+     */
+    public ReadableByteChannel wrap(ReadableByteChannel in) {
+        return in;
+    }
+
+    /**
+     * Moves the next chunk of the response from the given channel to the target of the downloader.
+     *
+     * @param in response body
+     * @return number of bytes moved or -1 at the end of the stream
+     * @throws IOException if something went wrong
+     */
+    public abstract long transfer(ReadableByteChannel in) throws IOException;
 
     /**
      * Method that is called after the download finished (i.e. to close file streams).
@@ -392,6 +1041,14 @@ abstract class Downloader {
      * @throws IOException if something went wrong
      */
     public abstract void finished() throws IOException;
+
+    /**
+     * Method that is called if the download failed (i.e. to close file streams).
+     *
+     * @param discard true if already downloaded data can not be resumed
+     */
+    public void failed(boolean discard) {
+    }
 }
 
 /**
@@ -400,21 +1057,33 @@ abstract class Downloader {
  * @author redbeard
  */
 class StringDownloader extends Downloader {
-    private StringBuilder file;
+    private ByteArrayOutputStream file;
+    private ByteBuffer buffer;
 
     public StringDownloader(FileHelper helper) {
         super(helper);
-        file = new StringBuilder();
+        file = new ByteArrayOutputStream();
+        buffer = ByteBuffer.allocate(DownloadHelper.BUFFER_SIZE);
     }
 
     @Override
-    public void appendBytes(byte[] buffer, int byteRead) {
-        String data = new String(buffer, 0, byteRead);
-        file.append(data);
+    public long transfer(ReadableByteChannel in) throws IOException {
+        buffer.clear();
+        int read = in.read(buffer);
+
+        if (read > 0) {
+            file.write(buffer.array(), 0, read);
+        }
+        return read;
     }
 
     public String getFile() {
-        return file.toString();
+        try {
+            // decoded as a whole, so no multi-byte character is split
+            return file.toString("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     /**
@@ -428,27 +1097,234 @@ class StringDownloader extends Downloader {
 
 /**
  * Sub-Klasse um die Datei auf die Platte zu schreiben.
+ * Schreibt in eine .part Datei, die bei einem weiteren Versuch fortgesetzt werden kann.
  *
  * @author redbeard
  */
 class FileDownloader extends Downloader {
-    BufferedOutputStream output;
+    static final String PART_SUFFIX = ".part";
+    private final File part;
+    private FileChannel output;
+    private long position;
+    private long resumed;
+    private MessageDigest digest;
+    private DigestingChannel channel;
+    private String sha1;
+    private String ifRange;
+
+    public FileDownloader(FileHelper helper) {
+        this(helper, PART_SUFFIX);
+    }
 
-    public FileDownloader(FileHelper helper) throws FileNotFoundException {
+    /**
+     * @param helper
+     * @param suffix suffix of the file the download is written to until it is complete
+     */
+    public FileDownloader(FileHelper helper, String suffix) {
         super(helper);
-        output = new BufferedOutputStream(new FileOutputStream(
-                helper.getDestinationDir() + File.separator + helper.getLocalFileName()));
+        part = new File(helper.getLocalPath() + suffix);
+    }
+
+    public File getPartFile() {
+        return part;
+    }
+
+    /**
+     * Deletes the part file together with the validators stored for it.
+     */
+    public void deletePartFile() {
+        part.delete();
+        CachedMetadata.delete(part);
+    }
+
+    /**
+     * @return true if an aborted download may be resumed from the part file
+     */
+    protected boolean isResumable() {
+        return true;
+    }
+
+    /**
+     * Sends the validator of the response the part file was written from as If-Range, so the server
+     * sends the whole file again if it changed in the meantime.
+     */
+    @Override
+    public void prepare(HttpURLConnection connection) {
+        ifRange = null;
+
+        if (isResumable() && part.length() > 0) {
+            CachedMetadata cached = CachedMetadata.readPart(part);
+
+            ifRange = cached != null ? cached.getIfRange() : null;
+            if (ifRange != null) {
+                connection.setRequestProperty("If-Range", ifRange);
+            }
+        }
+    }
+
+    /**
+     * A part file is only resumed if it is known which version of the file it belongs to.
+     */
+    @Override
+    public long getResumeOffset() {
+        return ifRange != null ? part.length() : 0;
+    }
+
+    @Override
+    public void start(long offset) throws IOException {
+        digest = HashHelper.newSha1();
+        if (offset > 0) {
+            // only the resumed bytes are read again, the rest is digested while it arrives
+            HashHelper.update(digest, part);
+        }
+
+        output = new FileOutputStream(part, offset > 0).getChannel();
+        position = output.size();
+        resumed = position;
+
+        if (offset == 0 && isResumable()) {
+            CachedMetadata.writePart(part, getConnection().getHeaderField("ETag"), getConnection().getLastModified());
+        }
     }
 
     @Override
-    public void appendBytes(byte[] buffer, int byteRead) throws IOException {
-        output.write(buffer, 0, byteRead);
+    public ReadableByteChannel wrap(ReadableByteChannel in) {
+        channel = new DigestingChannel(in, digest);
+        return channel;
+    }
+
+    /**
+     * Returns the length of the part file as counted while downloading.
+     *
+     * @return length or -1 if nothing has been transferred
+     */
+    public long getLength() {
+        return channel == null ? -1 : resumed + channel.getLength();
+    }
+
+    /**
+     * Returns the SHA-1 checksum of the part file computed while downloading.
+     * Only valid after the download finished.
+     *
+     * @return hex checksum or null if nothing has been transferred
+     */
+    public String getSha1() {
+        if (sha1 == null && channel != null) {
+            sha1 = HashHelper.toHex(digest.digest());
+        }
+        return sha1;
+    }
+
+    /**
+     * Lets the file channel pull the bytes directly from the response, without copying
+     * them through an intermediate stream buffer.
+     */
+    @Override
+    public long transfer(ReadableByteChannel in) throws IOException {
+        if (isAborted()) {
+            throw new IOException("Download aborted: " + getFilename());
+        }
+
+        long moved = output.transferFrom(in, position, DownloadHelper.BUFFER_SIZE);
+
+        // a blocking source only moves nothing at the end of the stream
+        if (moved == 0) {
+            return -1;
+        }
+
+        position += moved;
+        return moved;
     }
 
     @Override
     public void finished() throws IOException {
         output.close();
     }
+
+    @Override
+    public void failed(boolean discard) {
+        if (output != null) {
+            try {
+                output.close();
+            } catch (IOException e) {
+                // the part file is checked by size and checksum before it is used
+            }
+        }
+
+        if (discard) {
+            deletePartFile();
+        }
+    }
+}
+
+/**
+ * Sub-Klasse fuer Metadaten wie Versionsliste, Versionsdateien und Asset-Indizes.
+ * Fragt mit den gespeicherten Validatoren (ETag, Last-Modified) an, ob sich die Datei geaendert hat.
+ * Die Antwort wird vollstaendig neu geladen, nie fortgesetzt.
+ */
+class MetadataDownloader extends FileDownloader {
+    private final CachedMetadata cached;
+    private boolean modified = true;
+    private String eTag;
+    private long lastModified;
+
+    /**
+     * @param helper
+     * @param cached validators of the local file or null to download it unconditionally
+     */
+    public MetadataDownloader(FileHelper helper, CachedMetadata cached) {
+        super(helper, ".tmp");
+        this.cached = cached;
+    }
+
+    @Override
+    protected boolean isResumable() {
+        return false;
+    }
+
+    @Override
+    public void prepare(HttpURLConnection connection) {
+        if (cached != null) {
+            if (cached.getETag() != null) {
+                connection.setRequestProperty("If-None-Match", cached.getETag());
+            }
+            if (cached.getLastModified() > 0) {
+                connection.setIfModifiedSince(cached.getLastModified());
+            }
+        }
+    }
+
+    @Override
+    public void start(long offset) throws IOException {
+        eTag = getConnection().getHeaderField("ETag");
+        lastModified = getConnection().getLastModified();
+        super.start(0);
+    }
+
+    @Override
+    public void notModified() throws IOException {
+        if (cached == null) {
+            super.notModified();
+        }
+        modified = false;
+    }
+
+    @Override
+    public void failed(boolean discard) {
+        super.failed(true);
+    }
+
+    public boolean isModified() {
+        return modified;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
 }
 
 /**
@@ -460,6 +1336,8 @@ class FileHelper {
     private String fAddress;
     private String destinationDir;
     private String localFileName;
+    private String expectedHash;
+    private long expectedSize = -1;
 
     public FileHelper(String fAddress, String destinationDir, String localFileName) {
         this.fAddress = fAddress;
@@ -497,4 +1375,31 @@ class FileHelper {
     public String getDestinationDir() {
         return destinationDir;
     }
+
+    public String getLocalPath() {
+        return destinationDir + File.separator + localFileName;
+    }
+
+    /**
+     * Sets the SHA-1 checksum and size the downloaded file must have.
+     *
+     * @param sha1 hex checksum or null if unknown
+     * @param size size in bytes or -1 if unknown
+     */
+    public void setExpectedHash(String sha1, long size) {
+        this.expectedHash = sha1;
+        this.expectedSize = size;
+    }
+
+    public boolean hasExpectedHash() {
+        return expectedHash != null && !expectedHash.isEmpty();
+    }
+
+    public String getExpectedHash() {
+        return expectedHash;
+    }
+
+    public long getExpectedSize() {
+        return expectedSize;
+    }
 }
@@ -8,6 +8,7 @@ import de.craften.craftenlauncher.logic.download.loader.RessourceDownloader;
 import de.craften.craftenlauncher.logic.download.loader.SkinDownloader;
 import de.craften.craftenlauncher.logic.json.JSONReader;
 import de.craften.craftenlauncher.logic.minecraft.MinecraftPathImpl;
+import de.craften.craftenlauncher.logic.resources.LibEntry;
 import de.craften.craftenlauncher.logic.resources.Version;
 import de.craften.craftenlauncher.logic.version.MinecraftVersion;
 import de.craften.craftenlauncher.logic.vm.DownloadVM;
@@ -16,18 +17,21 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.File;
-import java.util.Stack;
+import java.util.concurrent.LinkedBlockingDeque;
 
 public class DownloadService implements Runnable {
     private static final Logger LOGGER = LogManager.getLogger(DownloadService.class);
-    private boolean mRunning;
-    private boolean mFinRessources, mFinJar, mFinLibraries;
-    private Stack<DownloadTasks> mCurrentTasks;
+    private volatile boolean mRunning;
+    private volatile boolean mJarScheduled, mLibrariesScheduled, mIndexScheduled;
+    private final LinkedBlockingDeque<DownloadTasks> mCurrentTasks;
+    private final InstallPipeline mPipeline;
+    private final InstallJournal mJournal;
     private DownloadVM mDownloadVM;
     private MinecraftPathImpl mMinecraftPath;
-    private MinecraftVersion mCurrentVersion;
+    private volatile MinecraftVersion mCurrentVersion;
+    private Thread mThread;
 
-    private RessourceDownloader mRessDownloader;
+    private volatile RessourceDownloader mRessDownloader;
 
     /**
      * Erstellt einen neuen Download Service. Fuer die Downloads werden alle aktuellen
@@ -42,137 +46,237 @@ public class DownloadService implements Runnable {
         DownloadHelper.setDownloadHelper(downVM);
         this.mDownloadVM.setProgressBarToNull();
         this.mMinecraftPath = mcPath;
-        this.mCurrentTasks = new Stack<DownloadTasks>();
+        this.mJournal = InstallJournal.forDirectory(mcPath.getMinecraftDir());
+        DownloadHelper.setJournal(mJournal);
+        this.mCurrentTasks = new LinkedBlockingDeque<DownloadTasks>();
+        this.mPipeline = new InstallPipeline(new InstallPipeline.Listener() {
+            @Override
+            public void taskFinished(InstallTask task) {
+                boolean finished = isFinished();
+
+                if (finished || mPipeline.isDone()) {
+                    mJournal.save();
+                }
+                mDownloadVM.setMinecraftDownload(finished);
+            }
+
+            @Override
+            public void taskFailed(InstallTask task) {
+                LOGGER.error("Download failed for good: " + task);
+                if (mPipeline.isDone()) {
+                    mJournal.save();
+                }
+                if (task.isLaunchCritical()) {
+                    mDownloadVM.setRetryState("Download failed: " + task);
+                }
+            }
+        });
         this.mRunning = true;
     }
 
-    public synchronized void addTask(DownloadTasks task) {
+    /**
+     * Adds a task on top of the task stack. The task is split into its single steps, which are
+     * executed in parallel by the install pipeline.
+     *
+     * @param task
+     */
+    public void addTask(DownloadTasks task) {
         mCurrentTasks.push(task);
     }
 
+    /**
+     * Waits for a minecraft version and then hands the tasks to the install pipeline as they arrive.
+     * While there is nothing to do the service thread is blocked and does not use any CPU.
+     */
     @Override
     public void run() {
         LOGGER.debug("DownloadService started!");
 
-        while (mRunning) {
-            if (mCurrentVersion == null) {
-                Thread.yield();
-                continue;
-            }
+        synchronized (this) {
+            mThread = Thread.currentThread();
+        }
+
+        try {
+            waitForVersion();
 
-            DownloadTasks task = getTask();
+            while (mRunning) {
+                DownloadTasks task = mCurrentTasks.takeFirst();
 
-            if (task != null) {
                 try {
-                    doTask(task);
+                    scheduleTask(task);
                 } catch (Exception e) {
                     //TODO: Test-Workaround damit unter keinen Umstaenden der Service stirbt.
                     LOGGER.error("Unkown exception in DownloadService", e);
-
-                    if (DownloadTasks.RESSOURCES != task) {
-                        LOGGER.debug("Adding task in run() again");
-                        addTask(task);
-                    }
                 }
             }
+        } catch (InterruptedException e) {
+            LOGGER.debug("DownloadService interrupted");
         }
+
+        LOGGER.debug("DownloadService stopped!");
     }
 
-    private synchronized DownloadTasks getTask() {
-        if (!mCurrentTasks.isEmpty()) {
-            return mCurrentTasks.pop();
+    private synchronized void waitForVersion() throws InterruptedException {
+        while (mRunning && mCurrentVersion == null) {
+            wait();
         }
-
-        return null;
     }
 
-    private void doTask(DownloadTasks task) {
+    private void scheduleTask(DownloadTasks task) {
         switch (task) {
             case RESSOURCES:
-                downloadRessources();
+                scheduleRessources();
                 break;
 
             case JAR:
-                downloadJar();
+                scheduleJar();
                 break;
 
             case LIBRARIES:
-                downloadLibraries();
+                scheduleLibraries();
                 break;
 
             default:
                 break;
         }
-
-        mDownloadVM.setMinecraftDownload(isFinished());
     }
 
-    private void downloadRessources() {
-        LOGGER.info("Starting download ressources");
+    /**
+     * The asset index is needed before the asset objects can be downloaded and Minecraft can not load
+     * any asset without it, so it is launch-critical. Minecraft can be started without all assets, so
+     * the objects are not launch-critical and have the lowest priority.
+     */
+    private void scheduleRessources() {
+        LOGGER.info("Scheduling ressources");
         mRessDownloader = new RessourceDownloader(mCurrentVersion, mMinecraftPath.getResourcePath(), mDownloadVM);
 
-        try {
-            mRessDownloader.download();
-            mFinRessources = true;
-        } catch (CraftenDownloadException e) {
-            //Sonderfall kein finRes=false da Minecraft auch mit nicht vollstaendigen Ressourcen gestartet werden kann / soll.
-            LOGGER.warn("Error in downloadRessources -> Adding Task again!", e);
-            addTask(DownloadTasks.RESSOURCES);
-        }
-
-        LOGGER.info("Resources-Download finished.");
-    }
-
-    private void downloadJar() {
-        LOGGER.info("Starting download jar");
-
-        JarDownloader jarDown = new JarDownloader(mCurrentVersion, mMinecraftPath);
+        InstallTask index = new InstallTask("Asset index", InstallTask.Priority.HIGH, true) {
+            @Override
+            protected void execute() throws CraftenDownloadException {
+                mRessDownloader.downloadIndex();
+            }
+        };
 
-        try {
-            jarDown.download();
-            mFinJar = true;
-        } catch (CraftenDownloadException e) {
-            LOGGER.warn("Jar could not be downloaded -> Adding Task again!", e);
-            mFinJar = false;
-            addTask(DownloadTasks.JAR);
-        }
+        InstallTask objects = new InstallTask("Asset objects", InstallTask.Priority.LOW, false) {
+            @Override
+            protected void execute() throws CraftenDownloadException {
+                mRessDownloader.download();
+                LOGGER.info("Resources-Download finished.");
+            }
+        };
 
-        LOGGER.info("Jar-Download finished.");
-        mDownloadVM.updateProgress(10);
+        mPipeline.add(index);
+        mPipeline.add(objects, index);
+        mIndexScheduled = true;
     }
 
-    private void downloadLibraries() {
-        LOGGER.info("Starting download libraries");
+    private void scheduleJar() {
+        LOGGER.info("Scheduling jar");
+        final JarDownloader jarDown = new JarDownloader(mCurrentVersion, mMinecraftPath);
 
-        LibraryDownloader libDown = new LibraryDownloader(mCurrentVersion, mMinecraftPath, mDownloadVM);
+        mPipeline.add(new InstallTask("Jar " + mCurrentVersion.getVersion(), InstallTask.Priority.HIGH, true) {
+            @Override
+            protected void execute() throws CraftenDownloadException {
+                jarDown.download();
+                LOGGER.info("Jar-Download finished.");
+                mDownloadVM.updateProgress(10);
+            }
+        });
+        mJarScheduled = true;
+    }
 
-        try {
-            libDown.download();
-            mFinLibraries = true;
-        } catch (CraftenDownloadException e) {
-            LOGGER.warn("Possible Version Json could not be downloaded -> Adding Task again!", e);
-            mFinLibraries = false;
-            addTask(DownloadTasks.LIBRARIES);
+    /**
+     * Every library is a task of its own, extracting natives depends on the library it is part of.
+     */
+    private void scheduleLibraries() {
+        LOGGER.info("Scheduling libraries");
+        final LibraryDownloader libDown = new LibraryDownloader(mCurrentVersion, mMinecraftPath, mDownloadVM);
+
+        for (final LibEntry entry : libDown.getLibraries()) {
+            InstallTask library = new InstallTask("Library " + entry.getFileName(), InstallTask.Priority.HIGH, true) {
+                @Override
+                protected void execute() throws CraftenDownloadException {
+                    libDown.downloadLibrary(entry);
+                }
+            };
+            mPipeline.add(library);
+
+            if (entry.isExtractable()) {
+                mPipeline.add(new InstallTask("Natives " + entry.getFileName(), InstallTask.Priority.HIGH, true) {
+                    @Override
+                    protected void execute() throws CraftenDownloadException {
+                        libDown.extractNatives(entry);
+                    }
+                }, library);
+            }
         }
-        LOGGER.info("Libaries-Download finished.");
+        mLibrariesScheduled = true;
     }
 
+    /**
+     * Stops the service if running is false. A waiting service thread is woken up and ends,
+     * the install pipeline is cancelled and all running transfers of its tasks are aborted. Their
+     * part files are kept, so the next service can resume them. Other requests, i.e. logging in or
+     * loading a skin, are not aborted.
+     *
+     * @param running
+     */
     public synchronized void setRunning(boolean running) {
         this.mRunning = running;
 
-        if (!running && mRessDownloader != null) {
-            mRessDownloader.stopDownload();
+        if (!running) {
+            mPipeline.cancel();
+            if (mRessDownloader != null) {
+                mRessDownloader.stopDownload();
+            }
+            mJournal.save();
+            if (mThread != null) {
+                mThread.interrupt();
+            }
+            notifyAll();
         }
     }
 
+    /**
+     * Returns true if everything Minecraft needs to start (jar, libraries, natives and the asset index)
+     * is downloaded.
+     * Assets may still be downloading in the background.
+     *
+     * @return
+     */
     public boolean isFinished() {
-        return (mFinRessources && mFinLibraries && mFinJar);
+        return mJarScheduled && mLibrariesScheduled && mIndexScheduled && mPipeline.isCriticalDone();
+    }
+
+    /**
+     * Returns true if all downloads, including the assets, are done.
+     *
+     * @return
+     */
+    public boolean isAllDone() {
+        return mPipeline.isDone();
+    }
+
+    /**
+     * Blocks until all downloads, including the assets, are done, the service is stopped or the
+     * timeout elapsed.
+     *
+     * @param timeout maximal time to wait in milliseconds
+     * @return true if all downloads are done
+     * @throws InterruptedException
+     */
+    public boolean awaitAllDownloads(long timeout) throws InterruptedException {
+        return mPipeline.awaitDone(timeout);
     }
 
     public void setMinecraftVersion(MinecraftVersion version, String assetsVersion) throws CraftenLogicException {
         try {
-            DownloadHelper.downloadFileToDiskWithoutCheck(DownloadUrls.URL_VERSION + assetsVersion + "/" + assetsVersion
-                    + ".json", mMinecraftPath.getMinecraftVersionsDir() + version.getVersion() + File.separator, version.getVersion() + ".json");
+            File json = new File(mMinecraftPath.getMinecraftVersionsDir() + version.getVersion() + File.separator + version.getVersion() + ".json");
+
+            // a version file the launcher did not download itself, i.e. of a modded version, is kept as it is
+            if (!json.isFile() || CachedMetadata.read(json) != null) {
+                DownloadHelper.downloadMetadata(DownloadUrls.URL_VERSION + assetsVersion + "/" + assetsVersion + ".json", json.getPath());
+            }
 
             Version vers = JSONReader.readJsonFileFromSelectedVersion(mMinecraftPath.getMinecraftJarPath() + version.getVersion() + ".json");
 
@@ -182,7 +286,10 @@ public class DownloadService implements Runnable {
             throw new CraftenDownloadException("Could not download Json File: " + version.getVersion() + ".json");
         }
 
-        this.mCurrentVersion = version;
+        synchronized (this) {
+            this.mCurrentVersion = version;
+            notifyAll();
+        }
     }
 
     public void setMinecraftVersion(MinecraftVersion version) throws CraftenLogicException {
@@ -0,0 +1,157 @@
+package de.craften.craftenlauncher.logic.download;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Downloads a file and, if it takes longer than the delay of the hedging policy, sends a
+ * duplicate request into a separate .hedge file. Whichever request completes first wins and
+ * is returned at once, the other one is aborted and removes its file when it ends.
+ */
+class HedgedDownload {
+    private static final Logger LOGGER = LogManager.getLogger(HedgedDownload.class);
+    static final String HEDGE_SUFFIX = ".hedge";
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "HedgedDownload");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final HedgingPolicy mPolicy;
+    private final FileDownloader mPrimary;
+    private final FileDownloader mHedge;
+
+    // guarded by this
+    private FileDownloader mWinner;
+    private boolean mPrimaryRunning, mHedgeRunning;
+
+    /**
+     * @param policy
+     * @param primary downloader of the regular request
+     */
+    HedgedDownload(HedgingPolicy policy, FileDownloader primary) {
+        this.mPolicy = policy;
+        this.mPrimary = primary;
+        this.mHedge = new FileDownloader(primary.getHelper(), HEDGE_SUFFIX);
+    }
+
+    /**
+     * Runs the download and hedges it if it is slow. Returns as soon as one of the requests is complete.
+     *
+     * @return the downloader whose file is complete or null if all requests failed
+     */
+    FileDownloader download() {
+        long start = System.currentTimeMillis();
+        long delay = mPolicy.onRequest();
+        FileDownloader winner;
+
+        synchronized (this) {
+            mPrimaryRunning = true;
+            execute(mPrimary);
+
+            try {
+                if (delay >= 0) {
+                    long remaining = delay;
+                    while (mWinner == null && mPrimaryRunning && remaining > 0) {
+                        wait(remaining);
+                        remaining = start + delay - System.currentTimeMillis();
+                    }
+
+                    if (mWinner == null && mPrimaryRunning && mPolicy.tryHedge()) {
+                        LOGGER.debug("Hedging download of " + mHedge.getFilename() + " after " + delay + " ms");
+                        mHedgeRunning = true;
+                        execute(mHedge);
+                    }
+                }
+
+                while (mWinner == null && (mPrimaryRunning || mHedgeRunning)) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                mPrimary.abort();
+                mHedge.abort();
+            }
+
+            winner = mWinner;
+        }
+
+        if (winner != null) {
+            abort(winner == mPrimary ? mHedge : mPrimary);
+            mPolicy.onCompleted(System.currentTimeMillis() - start, winner == mHedge);
+        }
+
+        return winner;
+    }
+
+    /**
+     * Blocks until no request writes to its file anymore, i.e. before the download is tried again.
+     */
+    synchronized void awaitRequests() {
+        while (mPrimaryRunning || mHedgeRunning) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Closing a connection blocks until a running read returns, so the loser is aborted in the background.
+     *
+     * @param downloader
+     */
+    private void abort(final FileDownloader downloader) {
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                downloader.abort();
+            }
+        });
+    }
+
+    private void execute(final FileDownloader downloader) {
+        EXECUTOR.execute(TransferGroup.wrap(new Runnable() {
+            @Override
+            public void run() {
+                if (downloader == mHedge) {
+                    mHedge.deletePartFile();
+                }
+
+                boolean succeeded = DownloadHelper.download(downloader);
+                finished(downloader, succeeded);
+            }
+        }));
+    }
+
+    private synchronized void finished(FileDownloader downloader, boolean succeeded) {
+        if (downloader == mPrimary) {
+            mPrimaryRunning = false;
+        } else {
+            mHedgeRunning = false;
+        }
+
+        if (succeeded && mWinner == null) {
+            mWinner = downloader;
+        } else if (downloader == mHedge || mWinner != null) {
+            // a failed hedge is never resumed, a loser is not needed anymore
+            downloader.deletePartFile();
+        }
+
+        if (mWinner == mHedge && !mPrimaryRunning) {
+            mPrimary.deletePartFile();
+        }
+
+        notifyAll();
+    }
+}
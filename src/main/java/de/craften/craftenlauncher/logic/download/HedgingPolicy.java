@@ -0,0 +1,108 @@
+package de.craften.craftenlauncher.logic.download;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Arrays;
+
+/**
+ * Decides when a slow download gets a second, duplicate request (a hedge). The delay adapts
+ * to a percentile of the recent download latencies, so only the slowest requests are hedged.
+ * A token budget bounds the extra requests to a small share of all requests.
+ */
+public class HedgingPolicy {
+    private static final Logger LOGGER = LogManager.getLogger(HedgingPolicy.class);
+    private static final int SAMPLES = 256;
+    private static final int MIN_SAMPLES = 32;
+    private static final long MIN_DELAY = 50;
+
+    private final double mPercentile;
+    private final double mBudgetRatio;
+    private final double mMaxTokens;
+
+    private final long[] mLatencies = new long[SAMPLES];
+    private int mSampleCount, mNextSample;
+    private long mDelay = -1;
+    private double mTokens;
+    private long mRequests, mHedges, mWins;
+
+    /**
+     * @param percentile  latency percentile after which a request is hedged, i.e. 0.95
+     * @param budgetRatio share of additional requests allowed, i.e. 0.05 for 5%
+     * @param maxTokens   maximal number of hedges that may be saved up
+     */
+    public HedgingPolicy(double percentile, double budgetRatio, double maxTokens) {
+        this.mPercentile = percentile;
+        this.mBudgetRatio = budgetRatio;
+        this.mMaxTokens = maxTokens;
+    }
+
+    /**
+     * Called for every request which may be hedged. Adds its share to the budget.
+     *
+     * @return delay in milliseconds after which the request should be hedged, -1 if it should not be hedged
+     */
+    public synchronized long onRequest() {
+        mRequests++;
+        mTokens = Math.min(mMaxTokens, mTokens + mBudgetRatio);
+        return mDelay;
+    }
+
+    /**
+     * Takes a hedge from the budget.
+     *
+     * @return true if the hedge may be sent
+     */
+    public synchronized boolean tryHedge() {
+        if (mTokens < 1) {
+            return false;
+        }
+
+        mTokens--;
+        mHedges++;
+        return true;
+    }
+
+    /**
+     * Reports a completed download.
+     *
+     * @param latencyMillis time until the download finished
+     * @param hedgeWon      true if the hedge finished first
+     */
+    public synchronized void onCompleted(long latencyMillis, boolean hedgeWon) {
+        if (hedgeWon) {
+            mWins++;
+        }
+
+        mLatencies[mNextSample] = latencyMillis;
+        mNextSample = (mNextSample + 1) % SAMPLES;
+        mSampleCount = Math.min(SAMPLES, mSampleCount + 1);
+
+        // sorting is cheap for a few hundred samples, but not worth it for every single download
+        if (mSampleCount >= MIN_SAMPLES && mNextSample % (MIN_SAMPLES / 2) == 0) {
+            long[] sorted = Arrays.copyOf(mLatencies, mSampleCount);
+            Arrays.sort(sorted);
+            mDelay = Math.max(MIN_DELAY, sorted[(int) Math.min(mSampleCount - 1, mSampleCount * mPercentile)]);
+        }
+    }
+
+    /**
+     * Logs how many requests were hedged and how often the hedge was faster.
+     */
+    public synchronized void logStatistics() {
+        LOGGER.info(String.format("Hedged %d of %d requests (delay %d ms), hedge won %d times (%.0f%%)",
+                mHedges, mRequests, mDelay, mWins, mHedges == 0 ? 0.0 : mWins * 100.0 / mHedges));
+    }
+
+    public synchronized long getDelay() {
+        return mDelay;
+    }
+
+    public synchronized long getHedges() {
+        return mHedges;
+    }
+
+    public synchronized long getWins() {
+        return mWins;
+    }
+}
@@ -0,0 +1,213 @@
+package de.craften.craftenlauncher.logic.download;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Shared HTTP transport of the launcher. All connections are opened here and handed back
+ * with {@link #release(HttpURLConnection, InputStream)} instead of being disconnected, so the
+ * JVM keeps the sockets alive and reuses them for the next request to the same host.
+ * <p>
+ * Connections opened for a {@link TransferGroup} are tracked, so all running transfers of the group
+ * can be aborted at once with {@link #abortAll(TransferGroup)}.
+ */
+public final class HttpTransport {
+    private static final Logger LOGGER = LogManager.getLogger(HttpTransport.class);
+    private static final int MAX_CONNECTIONS_PER_HOST = 16;
+    private static final int MAX_DRAIN_BYTES = 64 * 1024;
+    private static volatile int connectTimeout = 10 * 1000;
+    private static volatile int readTimeout = 30 * 1000;
+    private static final ConcurrentMap<HttpURLConnection, TransferGroup> ACTIVE = new ConcurrentHashMap<>();
+    private static final ExecutorService ABORT_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "HttpTransport-Abort");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    static {
+        // Has to be set before the first connection is opened, the keep-alive cache reads it only once.
+        if (System.getProperty("http.keepAlive") == null) {
+            System.setProperty("http.keepAlive", "true");
+        }
+        if (System.getProperty("http.maxConnections") == null) {
+            System.setProperty("http.maxConnections", String.valueOf(MAX_CONNECTIONS_PER_HOST));
+        }
+    }
+
+    private HttpTransport() {
+    }
+
+    /**
+     * Opens a GET connection to the given url.
+     *
+     * @param url
+     * @return
+     * @throws IOException
+     */
+    public static HttpURLConnection open(String url) throws IOException {
+        return open(url, "GET");
+    }
+
+    /**
+     * Opens a connection to the given url using the given request method. If the current thread runs
+     * for a {@link TransferGroup}, the connection belongs to that group.
+     *
+     * @param url
+     * @param method
+     * @return
+     * @throws IOException if the url is invalid or the group of the thread has been aborted
+     */
+    public static HttpURLConnection open(String url, String method) throws IOException {
+        TransferGroup group = TransferGroup.current();
+
+        if (group != null && group.isAborted()) {
+            throw new IOException("Transfers of " + group + " aborted: " + url);
+        }
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod(method);
+        connection.setUseCaches(false);
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
+
+        if (group != null) {
+            ACTIVE.put(connection, group);
+            if (group.isAborted()) {
+                // aborted while the connection was opened
+                abort(connection);
+                throw new IOException("Transfers of " + group + " aborted: " + url);
+            }
+        }
+
+        return connection;
+    }
+
+    /**
+     * Sets the time to wait for a connection to be established.
+     *
+     * @param millis timeout in milliseconds, 0 waits forever
+     */
+    public static void setConnectTimeout(int millis) {
+        connectTimeout = millis;
+    }
+
+    public static int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * Sets the time to wait for the next bytes of a response.
+     *
+     * @param millis timeout in milliseconds, 0 waits forever
+     */
+    public static void setReadTimeout(int millis) {
+        readTimeout = millis;
+    }
+
+    public static int getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * Hands the connection back to the pool. If the response body was read completely, the
+     * underlying socket is reused by the next request to the same host. Small remainders and
+     * error bodies are drained so the connection stays reusable.
+     *
+     * @param connection connection, may be null
+     * @param in         response stream that was read from, may be null
+     */
+    public static void release(HttpURLConnection connection, InputStream in) {
+        if (in != null) {
+            drainAndClose(in);
+        }
+
+        if (connection != null) {
+            ACTIVE.remove(connection);
+
+            InputStream error = connection.getErrorStream();
+            if (error != null) {
+                drainAndClose(error);
+            }
+        }
+    }
+
+    /**
+     * Closes the connection without returning it to the pool, i.e. after a broken transfer.
+     *
+     * @param connection connection, may be null
+     */
+    public static void abort(HttpURLConnection connection) {
+        if (connection != null) {
+            ACTIVE.remove(connection);
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Aborts all open connections of the given group, i.e. when the downloads of a version are
+     * cancelled. Closing a connection waits for a running read to return, so the connections are
+     * closed in the background and the reading threads fail with their next read.
+     *
+     * @param group
+     * @return number of aborted connections
+     */
+    static int abortAll(TransferGroup group) {
+        List<HttpURLConnection> connections = new ArrayList<>();
+
+        for (Map.Entry<HttpURLConnection, TransferGroup> entry : ACTIVE.entrySet()) {
+            if (entry.getValue() == group && ACTIVE.remove(entry.getKey(), group)) {
+                connections.add(entry.getKey());
+            }
+        }
+
+        for (final HttpURLConnection connection : connections) {
+            ABORT_EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    connection.disconnect();
+                }
+            });
+        }
+
+        if (!connections.isEmpty()) {
+            LOGGER.info("Aborted " + connections.size() + " open connections of " + group);
+        }
+        return connections.size();
+    }
+
+    private static void drainAndClose(InputStream in) {
+        try {
+            byte[] buf = new byte[4096];
+            int drained = 0;
+            int read;
+
+            while (drained < MAX_DRAIN_BYTES && (read = in.read(buf)) != -1) {
+                drained += read;
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Could not drain response stream");
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                LOGGER.debug("Could not close response stream");
+            }
+        }
+    }
+}
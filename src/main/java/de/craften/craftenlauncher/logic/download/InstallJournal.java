@@ -0,0 +1,246 @@
+package de.craften.craftenlauncher.logic.download;
+
+import de.craften.util.HashHelper;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Journal of the files which have been downloaded or verified in a Minecraft directory. A file whose
+ * size and modification time did not change since it was recorded is trusted without reading it
+ * again or asking the server, so a warm start does not have to check every library and asset.
+ * <p>
+ * The journal is stored as a small binary file with a checksum. If it is missing, belongs to
+ * another version of the launcher or is corrupt, it is ignored and all files are checked again.
+ */
+public class InstallJournal {
+    private static final Logger LOGGER = LogManager.getLogger(InstallJournal.class);
+    private static final String FILE_NAME = "craftenlauncher_journal.bin";
+    private static final int MAGIC = 0x434a524e;
+    private static final int VERSION = 1;
+    private static final int HASH_LENGTH = 20;
+    private static final Map<String, InstallJournal> JOURNALS = new HashMap<>();
+
+    private final File mFile;
+    private final String mBaseDir;
+    private final Map<String, Entry> mEntries = new ConcurrentHashMap<>();
+    private volatile boolean mDirty;
+
+    private static class Entry {
+        final long mSize;
+        final long mModified;
+        final byte[] mSha1;
+
+        Entry(long size, long modified, byte[] sha1) {
+            this.mSize = size;
+            this.mModified = modified;
+            this.mSha1 = sha1;
+        }
+    }
+
+    InstallJournal(File file, String baseDir) {
+        this.mFile = file;
+        this.mBaseDir = baseDir;
+    }
+
+    /**
+     * Returns the journal of the given Minecraft directory, loading it on first use.
+     *
+     * @param minecraftDir
+     * @return
+     */
+    public static synchronized InstallJournal forDirectory(String minecraftDir) {
+        InstallJournal journal = JOURNALS.get(minecraftDir);
+
+        if (journal == null) {
+            journal = new InstallJournal(new File(minecraftDir, FILE_NAME), new File(minecraftDir).getAbsolutePath());
+            journal.load();
+            JOURNALS.put(minecraftDir, journal);
+        }
+        return journal;
+    }
+
+    /**
+     * Returns true if the file was recorded and did not change since then.
+     *
+     * @param file
+     * @param sha1 expected SHA-1 checksum or null if unknown
+     * @param size expected size or -1 if unknown
+     * @return
+     */
+    public boolean isVerified(File file, String sha1, long size) {
+        Entry entry = mEntries.get(getKey(file));
+
+        if (entry == null || (size >= 0 && entry.mSize != size)) {
+            return false;
+        }
+
+        if (sha1 != null && (entry.mSha1 == null || !sha1.equalsIgnoreCase(HashHelper.toHex(entry.mSha1)))) {
+            return false;
+        }
+
+        return file.length() == entry.mSize && file.lastModified() == entry.mModified;
+    }
+
+    /**
+     * Records a file which has just been downloaded or verified.
+     *
+     * @param file
+     * @param sha1 SHA-1 checksum of the file or null if unknown
+     */
+    public void record(File file, String sha1) {
+        mEntries.put(getKey(file), new Entry(file.length(), file.lastModified(), toBytes(sha1)));
+        mDirty = true;
+    }
+
+    /**
+     * Removes a file from the journal, i.e. because it has to be downloaded again.
+     *
+     * @param file
+     */
+    public void remove(File file) {
+        if (mEntries.remove(getKey(file)) != null) {
+            mDirty = true;
+        }
+    }
+
+    public int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * Writes the journal to disk if something was recorded since it was loaded or saved.
+     */
+    public synchronized void save() {
+        if (!mDirty) {
+            return;
+        }
+        mDirty = false;
+
+        File temp = new File(mFile.getPath() + ".tmp");
+        CRC32 crc = new CRC32();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            DataOutputStream body = new DataOutputStream(new CheckedOutputStream(out, crc));
+            Map<String, Entry> entries = new HashMap<>(mEntries);
+            body.writeInt(entries.size());
+
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                Entry entry = e.getValue();
+
+                body.writeUTF(e.getKey());
+                body.writeLong(entry.mSize);
+                body.writeLong(entry.mModified);
+                body.writeBoolean(entry.mSha1 != null);
+                if (entry.mSha1 != null) {
+                    body.write(entry.mSha1);
+                }
+            }
+
+            body.flush();
+            out.writeLong(crc.getValue());
+        } catch (IOException e) {
+            LOGGER.warn("Could not write install journal " + mFile, e);
+            mDirty = true;
+            temp.delete();
+            return;
+        }
+
+        try {
+            try {
+                Files.move(temp.toPath(), mFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), mFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            LOGGER.debug("Install journal saved with " + mEntries.size() + " entries");
+        } catch (IOException e) {
+            LOGGER.warn("Could not replace install journal " + mFile, e);
+            mDirty = true;
+        }
+    }
+
+    void load() {
+        if (!mFile.isFile()) {
+            LOGGER.info("No install journal found, all files will be checked");
+            return;
+        }
+
+        CRC32 crc = new CRC32();
+        Map<String, Entry> entries = new HashMap<>();
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LOGGER.warn("Unknown install journal format, all files will be checked");
+                return;
+            }
+
+            DataInputStream body = new DataInputStream(new CheckedInputStream(in, crc));
+            int count = body.readInt();
+
+            for (int i = 0; i < count; i++) {
+                String key = body.readUTF();
+                long size = body.readLong();
+                long modified = body.readLong();
+                byte[] sha1 = null;
+
+                if (body.readBoolean()) {
+                    sha1 = new byte[HASH_LENGTH];
+                    body.readFully(sha1);
+                }
+                entries.put(key, new Entry(size, modified, sha1));
+            }
+
+            if (in.readLong() != crc.getValue()) {
+                LOGGER.warn("Install journal is corrupt, all files will be checked");
+                return;
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Could not read install journal, all files will be checked", e);
+            return;
+        }
+
+        mEntries.putAll(entries);
+        LOGGER.info("Install journal loaded with " + entries.size() + " entries");
+    }
+
+    private String getKey(File file) {
+        String path = file.getAbsolutePath();
+
+        if (path.startsWith(mBaseDir + File.separator)) {
+            return path.substring(mBaseDir.length() + 1);
+        }
+        return path;
+    }
+
+    private static byte[] toBytes(String sha1) {
+        if (sha1 == null || sha1.length() != HASH_LENGTH * 2) {
+            return null;
+        }
+
+        try {
+            return HashHelper.fromHex(sha1);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package de.craften.craftenlauncher.logic.download;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executes the tasks of an installation as a dependency graph. A task is handed to the shared
+ * worker pool as soon as all of its dependencies are done, so independent tasks (the jar, every
+ * library, the assets) run at the same time. Ready tasks are picked by priority.
+ * <p>
+ * A failed task is scheduled again after a delay given by the {@link RetryPolicy}, at most
+ * {@value #MAX_TRIES} tries are made. A task that keeps failing, i.e. a missing library, fails for
+ * good then, and so do all tasks depending on it, so the pipeline still finishes.
+ */
+public class InstallPipeline {
+    private static final Logger LOGGER = LogManager.getLogger(InstallPipeline.class);
+    private static final int WORKERS = 8;
+    static final int MAX_TRIES = 5;
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+    private static final ThreadPoolExecutor EXECUTOR;
+    private static final ScheduledExecutorService RETRY_SCHEDULER = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "InstallPipeline-Retry");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    static {
+        EXECUTOR = new ThreadPoolExecutor(WORKERS, WORKERS, 30, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "InstallPipeline");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Gets informed about finished tasks.
+     */
+    public interface Listener {
+        void taskFinished(InstallTask task);
+
+        /**
+         * Called for a task which failed for good and for every task depending on it.
+         *
+         * @param task
+         */
+        void taskFailed(InstallTask task);
+    }
+
+    private final Listener mListener;
+    private final TransferGroup mTransfers = new TransferGroup("install pipeline");
+    private final Set<Thread> mWorkers = new HashSet<>();
+    private int mPending, mCriticalPending;
+    private int mFailed, mCriticalFailed;
+    private volatile boolean mCancelled;
+
+    /**
+     * @param listener gets informed about every finished task, may be null
+     */
+    public InstallPipeline(Listener listener) {
+        this.mListener = listener;
+    }
+
+    /**
+     * Adds a task which is executed once the given tasks are done. The dependencies have to be
+     * added to this pipeline before.
+     *
+     * @param task
+     * @param dependencies
+     */
+    public synchronized void add(InstallTask task, InstallTask... dependencies) {
+        if (mCancelled) {
+            return;
+        }
+
+        boolean failed = false;
+
+        for (InstallTask dependency : dependencies) {
+            if (dependency.mFailed) {
+                failed = true;
+            } else if (!dependency.mDone) {
+                dependency.mDependents.add(task);
+                task.mPendingDependencies++;
+            }
+        }
+
+        task.mAdded = true;
+        mPending++;
+        if (task.isLaunchCritical()) {
+            mCriticalPending++;
+        }
+
+        if (failed) {
+            LOGGER.warn("Not running task, a task it depends on failed: " + task);
+            List<InstallTask> skipped = new ArrayList<>();
+            fail(task, skipped);
+            notifyFailed(skipped);
+        } else if (task.mPendingDependencies == 0) {
+            schedule(task);
+        }
+    }
+
+    private void schedule(InstallTask task) {
+        EXECUTOR.execute(new Job(task));
+    }
+
+    private void run(InstallTask task) {
+        if (mCancelled) {
+            return;
+        }
+
+        try {
+            LOGGER.debug("Starting task: " + task);
+            task.execute();
+            finished(task);
+        } catch (Exception e) {
+            LOGGER.warn("Task failed: " + task, e);
+
+            if (mCancelled) {
+                return;
+            }
+
+            if (++task.mFailures >= MAX_TRIES) {
+                LOGGER.error("Task failed " + task.mFailures + " times, giving up: " + task);
+                failed(task);
+            } else {
+                scheduleRetry(task);
+            }
+        }
+    }
+
+    private void scheduleRetry(final InstallTask task) {
+        long delay = RetryPolicy.getDefault().getBackoff(task.mFailures - 1);
+
+        LOGGER.info("Scheduling task again in " + delay + " ms: " + task);
+        RETRY_SCHEDULER.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (!mCancelled) {
+                    schedule(task);
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void finished(InstallTask task) {
+        synchronized (this) {
+            task.mDone = true;
+            mPending--;
+            if (task.isLaunchCritical()) {
+                mCriticalPending--;
+            }
+
+            for (InstallTask dependent : task.mDependents) {
+                if (--dependent.mPendingDependencies == 0 && dependent.mAdded) {
+                    schedule(dependent);
+                }
+            }
+            task.mDependents.clear();
+        }
+
+        if (mListener != null) {
+            mListener.taskFinished(task);
+        }
+
+        // waiting threads are woken up after the listener, so they see its results
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    private void failed(InstallTask task) {
+        List<InstallTask> failed = new ArrayList<>();
+
+        synchronized (this) {
+            fail(task, failed);
+        }
+        notifyFailed(failed);
+    }
+
+    /**
+     * Marks the task and all tasks depending on it as failed. They count as finished, so waiting for
+     * the pipeline ends.
+     *
+     * @param task
+     * @param failed collects the failed tasks
+     */
+    private void fail(InstallTask task, List<InstallTask> failed) {
+        if (task.mFailed || task.mDone) {
+            return;
+        }
+
+        task.mFailed = true;
+        failed.add(task);
+        mPending--;
+        mFailed++;
+        if (task.isLaunchCritical()) {
+            mCriticalPending--;
+            mCriticalFailed++;
+        }
+
+        for (InstallTask dependent : task.mDependents) {
+            if (dependent.mAdded) {
+                fail(dependent, failed);
+            }
+        }
+        task.mDependents.clear();
+    }
+
+    private void notifyFailed(List<InstallTask> failed) {
+        if (mListener != null) {
+            for (InstallTask task : failed) {
+                mListener.taskFailed(task);
+            }
+        }
+
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Returns true if a task failed for good.
+     *
+     * @return
+     */
+    public synchronized boolean hasFailed() {
+        return mFailed > 0;
+    }
+
+    /**
+     * Returns true if a task Minecraft needs to start failed for good.
+     *
+     * @return
+     */
+    public synchronized boolean isCriticalFailed() {
+        return mCriticalFailed > 0;
+    }
+
+    /**
+     * Returns true if all tasks Minecraft needs to start are done.
+     *
+     * @return
+     */
+    public synchronized boolean isCriticalDone() {
+        return mCriticalPending == 0 && mCriticalFailed == 0;
+    }
+
+    /**
+     * Returns true if all added tasks are done or failed.
+     *
+     * @return
+     */
+    public synchronized boolean isDone() {
+        return mPending == 0;
+    }
+
+    /**
+     * Blocks until all added tasks are done or failed or the pipeline is cancelled.
+     *
+     * @throws InterruptedException
+     */
+    public synchronized void awaitDone() throws InterruptedException {
+        while (mPending > 0 && !mCancelled) {
+            wait();
+        }
+    }
+
+    /**
+     * Blocks until all added tasks are done or failed, the pipeline is cancelled or the timeout
+     * elapsed.
+     *
+     * @param timeout maximal time to wait in milliseconds
+     * @return true if all tasks are done or failed
+     * @throws InterruptedException
+     */
+    public synchronized boolean awaitDone(long timeout) throws InterruptedException {
+        long end = System.currentTimeMillis() + timeout;
+        long remaining = timeout;
+
+        while (mPending > 0 && !mCancelled && remaining > 0) {
+            wait(remaining);
+            remaining = end - System.currentTimeMillis();
+        }
+        return mPending == 0;
+    }
+
+    /**
+     * Cancels the pipeline. Tasks which did not start yet are dropped, the workers running a task
+     * of this pipeline are interrupted, so they do not start new requests or wait for retries.
+     * The open connections of the tasks are aborted, connections of other threads are kept.
+     */
+    public synchronized void cancel() {
+        mCancelled = true;
+
+        for (Thread worker : mWorkers) {
+            worker.interrupt();
+        }
+        mTransfers.abort();
+        notifyAll();
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * Worker job, ordered by the priority of its task and then by the time it became ready.
+     */
+    private class Job implements Runnable, Comparable<Job> {
+        private final InstallTask mTask;
+        private final long mSequence;
+
+        Job(InstallTask task) {
+            this.mTask = task;
+            this.mSequence = SEQUENCE.getAndIncrement();
+        }
+
+        @Override
+        public void run() {
+            Thread worker = Thread.currentThread();
+
+            synchronized (InstallPipeline.this) {
+                if (mCancelled) {
+                    return;
+                }
+                mWorkers.add(worker);
+            }
+
+            TransferGroup previous = TransferGroup.enter(mTransfers);
+            try {
+                InstallPipeline.this.run(mTask);
+            } finally {
+                TransferGroup.leave(previous);
+                synchronized (InstallPipeline.this) {
+                    mWorkers.remove(worker);
+                }
+                // the workers are shared by all pipelines, an interrupt must not hit the next task
+                Thread.interrupted();
+            }
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            int result = mTask.getPriority().compareTo(other.mTask.getPriority());
+            if (result == 0) {
+                result = mSequence < other.mSequence ? -1 : (mSequence == other.mSequence ? 0 : 1);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package de.craften.craftenlauncher.logic.download;
+
+import de.craften.craftenlauncher.exception.CraftenDownloadException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A single step of installing a version, i.e. downloading one library or extracting its natives.
+ * Tasks are executed by an {@link InstallPipeline} as soon as all tasks they depend on are done.
+ */
+public abstract class InstallTask {
+    /**
+     * Order in which ready tasks are picked by the workers.
+     */
+    public enum Priority {
+        HIGH, NORMAL, LOW
+    }
+
+    private final String mName;
+    private final Priority mPriority;
+    private final boolean mLaunchCritical;
+
+    // guarded by the pipeline the task was added to
+    final List<InstallTask> mDependents = new ArrayList<>();
+    int mPendingDependencies;
+    boolean mAdded;
+    boolean mDone;
+    boolean mFailed;
+    int mFailures;
+
+    /**
+     * @param name           name used for logging
+     * @param priority       priority of the task
+     * @param launchCritical true if Minecraft can not be started without this task
+     */
+    protected InstallTask(String name, Priority priority, boolean launchCritical) {
+        this.mName = name;
+        this.mPriority = priority;
+        this.mLaunchCritical = launchCritical;
+    }
+
+    /**
+     * Executes the task. Called on a worker thread of the pipeline.
+     *
+     * @throws CraftenDownloadException if the task failed and should be tried again, see
+     *                                  {@link InstallPipeline#MAX_TRIES}
+     */
+    protected abstract void execute() throws CraftenDownloadException;
+
+    public String getName() {
+        return mName;
+    }
+
+    public Priority getPriority() {
+        return mPriority;
+    }
+
+    public boolean isLaunchCritical() {
+        return mLaunchCritical;
+    }
+
+    @Override
+    public String toString() {
+        return mName;
+    }
+}
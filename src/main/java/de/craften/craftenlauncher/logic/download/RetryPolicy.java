@@ -0,0 +1,174 @@
+package de.craften.craftenlauncher.logic.download;
+
+import de.craften.craftenlauncher.logic.vm.DownloadVM;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retry policy shared by all downloads:
+ * <ul>
+ * <li>failed requests are retried after an exponentially growing delay with jitter, so many
+ * failing downloads do not retry in lockstep</li>
+ * <li>a retry budget bounds the retries to a share of the successful requests, an outage does
+ * not multiply the load on the server</li>
+ * <li>a circuit breaker per host pauses all traffic to a host that keeps failing</li>
+ * </ul>
+ * Retries and paused hosts are logged and shown in the DownloadVM.
+ */
+public class RetryPolicy {
+    private static final Logger LOGGER = LogManager.getLogger(RetryPolicy.class);
+    private static final RetryPolicy DEFAULT = new RetryPolicy(500, 30 * 1000, 0.1, 20);
+
+    private final long mBaseDelay, mMaxDelay;
+    private final double mBudgetRatio, mMaxTokens;
+    private final Map<String, CircuitBreaker> mBreakers = new HashMap<>();
+    private double mTokens;
+    private volatile DownloadVM mDownloadVM;
+    private volatile boolean mStateShown;
+
+    /**
+     * @param baseDelay   delay before the first retry in milliseconds
+     * @param maxDelay    maximal delay between two tries in milliseconds
+     * @param budgetRatio retries earned by every successful request
+     * @param maxTokens   maximal number of retries that may be saved up
+     */
+    public RetryPolicy(long baseDelay, long maxDelay, double budgetRatio, double maxTokens) {
+        this.mBaseDelay = baseDelay;
+        this.mMaxDelay = maxDelay;
+        this.mBudgetRatio = budgetRatio;
+        this.mMaxTokens = maxTokens;
+        this.mTokens = maxTokens;
+    }
+
+    public static RetryPolicy getDefault() {
+        return DEFAULT;
+    }
+
+    public void setDownloadVM(DownloadVM downloadVM) {
+        this.mDownloadVM = downloadVM;
+    }
+
+    /**
+     * Returns the delay before the given retry: half of the exponential delay plus a random
+     * share of the other half.
+     *
+     * @param attempt number of tries that failed before, starting with 0
+     * @return delay in milliseconds
+     */
+    public long getBackoff(int attempt) {
+        long delay = Math.min(mMaxDelay, mBaseDelay << Math.min(attempt, 16));
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    /**
+     * Takes a retry from the budget.
+     *
+     * @return true if the request may be retried
+     */
+    public synchronized boolean tryRetry() {
+        if (mTokens < 1) {
+            return false;
+        }
+
+        mTokens--;
+        return true;
+    }
+
+    /**
+     * Waits before the given retry.
+     *
+     * @param attempt number of tries that failed before, starting with 0
+     * @param name    name of the download shown to the user
+     * @throws InterruptedException
+     */
+    public void awaitRetry(int attempt, String name) throws InterruptedException {
+        long delay = getBackoff(attempt);
+
+        LOGGER.info("Retrying " + name + " in " + delay + " ms (try " + (attempt + 2) + ")");
+        showState("Retrying " + name + " in " + (delay + 999) / 1000 + " s");
+        Thread.sleep(delay);
+    }
+
+    /**
+     * Blocks while the traffic to the host of the url is paused.
+     *
+     * @param url
+     * @throws InterruptedException
+     */
+    public void awaitHost(String url) throws InterruptedException {
+        getBreaker(url).await();
+    }
+
+    /**
+     * Reports a request that reached the host.
+     *
+     * @param url
+     */
+    public void onSuccess(String url) {
+        synchronized (this) {
+            mTokens = Math.min(mMaxTokens, mTokens + mBudgetRatio);
+        }
+
+        getBreaker(url).onSuccess();
+
+        if (mStateShown) {
+            showState(null);
+        }
+    }
+
+    /**
+     * Reports a request that failed because of the host or the network.
+     *
+     * @param url
+     */
+    public void onFailure(String url) {
+        long pause = getBreaker(url).onFailure();
+
+        if (pause > 0) {
+            showState("Server " + getHost(url) + " not reachable, waiting " + pause / 1000 + " s");
+        }
+    }
+
+    /**
+     * Reports a request that ended without a result.
+     *
+     * @param url
+     */
+    public void onAborted(String url) {
+        getBreaker(url).onAborted();
+    }
+
+    private synchronized CircuitBreaker getBreaker(String url) {
+        String host = getHost(url);
+        CircuitBreaker breaker = mBreakers.get(host);
+
+        if (breaker == null) {
+            breaker = new CircuitBreaker(host);
+            mBreakers.put(host, breaker);
+        }
+        return breaker;
+    }
+
+    private static String getHost(String url) {
+        try {
+            return new URL(url).getHost();
+        } catch (MalformedURLException e) {
+            return url;
+        }
+    }
+
+    private void showState(String state) {
+        mStateShown = state != null;
+
+        DownloadVM downloadVM = mDownloadVM;
+        if (downloadVM != null) {
+            downloadVM.setRetryState(state);
+        }
+    }
+}
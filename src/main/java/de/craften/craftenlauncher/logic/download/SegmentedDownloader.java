@@ -0,0 +1,403 @@
+package de.craften.craftenlauncher.logic.download;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Downloads a large file as several byte ranges at the same time. The ranges are written into a
+ * preallocated .seg file which becomes the part file once every range is complete.
+ * Only used if the server advertises "Accept-Ranges: bytes" and sends a validator (ETag or
+ * Last-Modified) for the file.
+ * <p>
+ * The progress of every range is stored in a .seg.state file, so an aborted download only requests
+ * the missing ranges again. Every range request carries the validator as If-Range, if the file
+ * changed on the server all ranges are discarded and the download starts over.
+ */
+class SegmentedDownloader {
+    private static final Logger LOGGER = LogManager.getLogger(SegmentedDownloader.class);
+    static final String SEGMENT_SUFFIX = ".seg";
+    private static final String STATE_SUFFIX = ".state";
+    private static final long CHECKPOINT = 4 * 1024 * 1024;
+    private static final int SEGMENTS = 4;
+    private static final long MIN_SEGMENT_SIZE = 1024 * 1024;
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "SegmentedDownloader");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final FileHelper mHelper;
+    private final File mPart;
+    private final File mSegmentFile;
+    private final File mStateFile;
+    private long mContentLength = -1;
+    private String mIfRange;
+    private long[] mDone;
+    private volatile boolean mChanged;
+
+    /**
+     * @param helper file to download
+     * @param part   part file the completed download is moved to
+     */
+    SegmentedDownloader(FileHelper helper, File part) {
+        this.mHelper = helper;
+        this.mPart = part;
+        this.mSegmentFile = new File(helper.getLocalPath() + SEGMENT_SUFFIX);
+        this.mStateFile = new File(mSegmentFile.getPath() + STATE_SUFFIX);
+    }
+
+    /**
+     * Returns true if the file could be worth splitting, i.e. it is not known to be smaller than the threshold
+     * and nothing of it has been downloaded yet.
+     *
+     * @param helper
+     * @param part
+     * @param threshold minimal size in bytes, 0 disables segmented downloads
+     * @return
+     */
+    static boolean isCandidate(FileHelper helper, File part, long threshold) {
+        if (threshold <= 0 || part.length() > 0) {
+            return false;
+        }
+
+        return helper.getExpectedSize() < 0 || helper.getExpectedSize() >= threshold;
+    }
+
+    /**
+     * Asks the server for the size, the validator of the file and whether it supports range requests.
+     *
+     * @param threshold minimal size in bytes
+     * @return true if the file should be downloaded in segments
+     */
+    boolean probe(long threshold) {
+        String url = mHelper.getFileAddress();
+        HttpURLConnection connection = null;
+        boolean admitted = false;
+        boolean reported = false;
+
+        try {
+            RetryPolicy.getDefault().awaitHost(url);
+            admitted = true;
+            connection = HttpTransport.open(url, "HEAD");
+
+            int responseCode = connection.getResponseCode();
+            reported = true;
+            report(url, responseCode);
+
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                return false;
+            }
+
+            mContentLength = connection.getContentLengthLong();
+            mIfRange = new CachedMetadata(connection.getHeaderField("ETag"), connection.getLastModified()).getIfRange();
+            String acceptRanges = connection.getHeaderField("Accept-Ranges");
+
+            if (mIfRange == null) {
+                LOGGER.debug("No validator for " + url + ", not downloading it in segments");
+                return false;
+            }
+            return mContentLength >= threshold && acceptRanges != null && acceptRanges.toLowerCase().contains("bytes");
+        } catch (IOException e) {
+            LOGGER.warn("Could not probe " + url + " for range support");
+            if (!reported && !Thread.currentThread().isInterrupted()) {
+                reported = true;
+                RetryPolicy.getDefault().onFailure(url);
+            }
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            // the request may hold the only probe of a paused host, it has to be released in any case
+            if (admitted && !reported) {
+                RetryPolicy.getDefault().onAborted(url);
+            }
+            HttpTransport.release(connection, null);
+        }
+    }
+
+    /**
+     * A host which answers works, unless it reports a server error.
+     *
+     * @param url
+     * @param responseCode
+     */
+    private static void report(String url, int responseCode) {
+        if (responseCode >= 500) {
+            RetryPolicy.getDefault().onFailure(url);
+        } else {
+            RetryPolicy.getDefault().onSuccess(url);
+        }
+    }
+
+    public long getContentLength() {
+        return mContentLength;
+    }
+
+    /**
+     * Downloads all missing segments concurrently. If one of them fails, the others are cancelled and
+     * false is returned. The progress of all segments is kept, so the next try only downloads what is
+     * missing. If the file changed on the server, the segments are discarded and the caller downloads
+     * the file as a whole.
+     *
+     * @return true if the complete file was moved to the part file
+     */
+    boolean download() {
+        int segments = (int) Math.max(1, Math.min(SEGMENTS, mContentLength / MIN_SEGMENT_SIZE));
+        long segmentSize = (mContentLength + segments - 1) / segments;
+        List<Future<Void>> futures = new ArrayList<>();
+
+        try {
+            if (!loadState(segments)) {
+                mDone = new long[segments];
+                try (RandomAccessFile file = new RandomAccessFile(mSegmentFile, "rw")) {
+                    file.setLength(0);
+                    file.setLength(mContentLength);
+                }
+                saveState();
+                LOGGER.info("Downloading " + mHelper.getLocalFileName() + " in " + segments + " segments");
+            } else {
+                LOGGER.info("Resuming segmented download of " + mHelper.getLocalFileName());
+            }
+
+            for (int i = 0; i < segments; i++) {
+                long start = i * segmentSize;
+                long end = Math.min(mContentLength, start + segmentSize) - 1;
+
+                if (start + mDone[i] <= end) {
+                    futures.add(EXECUTOR.submit(TransferGroup.wrap(getCallable(i, start, end))));
+                }
+            }
+
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+
+            Files.move(mSegmentFile.toPath(), mPart.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            mStateFile.delete();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Segmented download of " + mHelper.getLocalFileName() + " interrupted");
+        } catch (ExecutionException | IOException e) {
+            LOGGER.warn("Segmented download of " + mHelper.getLocalFileName() + " failed", e);
+        }
+
+        for (Future<Void> future : futures) {
+            future.cancel(true);
+        }
+
+        if (mChanged) {
+            LOGGER.info(mHelper.getLocalFileName() + " changed on the server, discarding its segments");
+            mSegmentFile.delete();
+            mStateFile.delete();
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the file changed on the server while it was downloaded in segments
+     */
+    boolean hasChanged() {
+        return mChanged;
+    }
+
+    /**
+     * Reads the progress of an earlier try. It is only used if it belongs to the same version of the
+     * file, which is checked by its length and validator.
+     *
+     * @param segments number of segments
+     * @return true if the progress was restored
+     */
+    private boolean loadState(int segments) {
+        if (!mStateFile.isFile() || mSegmentFile.length() != mContentLength) {
+            return false;
+        }
+
+        Properties state = new Properties();
+        try (InputStream in = new FileInputStream(mStateFile)) {
+            state.load(in);
+
+            if (Long.parseLong(state.getProperty("length", "-1")) != mContentLength
+                    || !mIfRange.equals(state.getProperty("validator"))
+                    || Integer.parseInt(state.getProperty("segments", "-1")) != segments) {
+                return false;
+            }
+
+            long[] done = new long[segments];
+            for (int i = 0; i < segments; i++) {
+                done[i] = Long.parseLong(state.getProperty("done." + i, "0"));
+            }
+            mDone = done;
+            return true;
+        } catch (IOException | NumberFormatException e) {
+            LOGGER.debug("Could not read " + mStateFile, e);
+            return false;
+        }
+    }
+
+    /**
+     * Stores the progress of all segments. Only bytes which were written to the segment file before
+     * are counted.
+     *
+     * @throws IOException if the progress could not be stored
+     */
+    private synchronized void saveState() throws IOException {
+        Properties state = new Properties();
+
+        state.setProperty("length", Long.toString(mContentLength));
+        state.setProperty("validator", mIfRange);
+        state.setProperty("segments", Integer.toString(mDone.length));
+        for (int i = 0; i < mDone.length; i++) {
+            state.setProperty("done." + i, Long.toString(mDone[i]));
+        }
+
+        try (OutputStream out = new FileOutputStream(mStateFile)) {
+            state.store(out, null);
+        }
+    }
+
+    /**
+     * Records that the given segment is complete up to the given position.
+     *
+     * @param segment
+     * @param start    first byte of the segment
+     * @param position next byte to download
+     * @param output   segment file, forced to disk before the progress is stored
+     */
+    private void checkpoint(int segment, long start, long position, FileChannel output) {
+        try {
+            output.force(false);
+            synchronized (this) {
+                mDone[segment] = position - start;
+            }
+            saveState();
+        } catch (IOException e) {
+            LOGGER.debug("Could not store progress of " + mHelper.getLocalFileName(), e);
+        }
+    }
+
+    private Callable<Void> getCallable(final int segment, final long start, final long end) {
+        return new Callable<Void>() {
+
+            @Override
+            public Void call() throws Exception {
+                downloadRange(segment, start, end);
+                return null;
+            }
+        };
+    }
+
+    private void downloadRange(int segment, long start, long end) throws IOException {
+        String url = mHelper.getFileAddress();
+        HttpURLConnection connection = null;
+        InputStream in = null;
+        boolean admitted = false;
+        boolean reported = false;
+        boolean completed = false;
+
+        try {
+            RetryPolicy.getDefault().awaitHost(url);
+            admitted = true;
+            connection = HttpTransport.open(url);
+            connection.setRequestProperty("Range", "bytes=" + (start + mDone[segment]) + "-" + end);
+            connection.setRequestProperty("If-Range", mIfRange);
+
+            int responseCode = connection.getResponseCode();
+            if (responseCode != HttpURLConnection.HTTP_PARTIAL) {
+                reported = true;
+                report(url, responseCode);
+                if (responseCode == HttpURLConnection.HTTP_OK) {
+                    // the server only ignores If-Range if the file changed
+                    mChanged = true;
+                }
+                throw new IOException("Server ignored range request: " + responseCode);
+            }
+
+            in = connection.getInputStream();
+            ReadableByteChannel channel = DownloadHelper.watch(Channels.newChannel(in), mHelper.getLocalFileName());
+
+            try (RandomAccessFile file = new RandomAccessFile(mSegmentFile, "rw")) {
+                FileChannel output = file.getChannel();
+                long position = start + mDone[segment];
+                long checkpoint = position;
+
+                try {
+                    while (position <= end) {
+                        long moved = output.transferFrom(channel, position,
+                                Math.min(DownloadHelper.BUFFER_SIZE, end - position + 1));
+                        if (moved == 0) {
+                            throw new IOException("Segment ended early at " + position + " of " + end);
+                        }
+
+                        position += moved;
+                        DownloadHelper.addDownloadedBytes(moved);
+
+                        if (position - checkpoint >= CHECKPOINT) {
+                            checkpoint(segment, start, position, output);
+                            checkpoint = position;
+                        }
+                    }
+                } finally {
+                    if (position > checkpoint) {
+                        checkpoint(segment, start, position, output);
+                    }
+                }
+            }
+
+            completed = true;
+            reported = true;
+            RetryPolicy.getDefault().onSuccess(url);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + url);
+        } catch (IOException e) {
+            if (admitted && !reported && !Thread.currentThread().isInterrupted()) {
+                reported = true;
+                RetryPolicy.getDefault().onFailure(url);
+            }
+            throw e;
+        } finally {
+            if (admitted && !reported) {
+                RetryPolicy.getDefault().onAborted(url);
+            }
+
+            if (completed) {
+                HttpTransport.release(connection, in);
+            } else {
+                if (in != null) {
+                    in.close();
+                }
+                HttpTransport.abort(connection);
+            }
+        }
+    }
+}
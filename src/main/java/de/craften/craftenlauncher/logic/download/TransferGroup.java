@@ -0,0 +1,125 @@
+package de.craften.craftenlauncher.logic.download;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Owner of the connections opened for one job, i.e. the install pipeline of a version. A thread runs
+ * for a group while it executes a task of it, every connection it opens with {@link HttpTransport}
+ * belongs to the group then. Tasks handed to other executors keep the group if they are wrapped with
+ * {@link #wrap(Runnable)} or {@link #wrap(Callable)}.
+ * <p>
+ * Aborting a group only closes its own connections, requests of other threads (i.e. logging in or
+ * loading a skin) are not affected.
+ */
+public final class TransferGroup {
+    private static final ThreadLocal<TransferGroup> CURRENT = new ThreadLocal<>();
+    private final String mName;
+    private volatile boolean mAborted;
+
+    /**
+     * @param name name used for logging
+     */
+    public TransferGroup(String name) {
+        this.mName = name;
+    }
+
+    /**
+     * Returns the group the current thread runs for.
+     *
+     * @return the group or null if the thread does not run for a group
+     */
+    public static TransferGroup current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Lets the current thread run for the given group.
+     *
+     * @param group group or null
+     * @return the group the thread ran for before, has to be restored after the task
+     */
+    static TransferGroup enter(TransferGroup group) {
+        TransferGroup previous = CURRENT.get();
+        CURRENT.set(group);
+        return previous;
+    }
+
+    static void leave(TransferGroup previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * Wraps a task, so it runs for the group of the calling thread.
+     *
+     * @param task
+     * @return
+     */
+    public static Runnable wrap(final Runnable task) {
+        final TransferGroup group = current();
+
+        if (group == null) {
+            return task;
+        }
+
+        return new Runnable() {
+            @Override
+            public void run() {
+                TransferGroup previous = enter(group);
+                try {
+                    task.run();
+                } finally {
+                    leave(previous);
+                }
+            }
+        };
+    }
+
+    /**
+     * Wraps a task, so it runs for the group of the calling thread.
+     *
+     * @param task
+     * @return
+     */
+    public static <T> Callable<T> wrap(final Callable<T> task) {
+        final TransferGroup group = current();
+
+        if (group == null) {
+            return task;
+        }
+
+        return new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                TransferGroup previous = enter(group);
+                try {
+                    return task.call();
+                } finally {
+                    leave(previous);
+                }
+            }
+        };
+    }
+
+    /**
+     * Aborts all open connections of the group. Connections opened for it afterwards fail at once.
+     *
+     * @return number of aborted connections
+     */
+    public int abort() {
+        mAborted = true;
+        return HttpTransport.abortAll(this);
+    }
+
+    public boolean isAborted() {
+        return mAborted;
+    }
+
+    @Override
+    public String toString() {
+        return mName;
+    }
+}
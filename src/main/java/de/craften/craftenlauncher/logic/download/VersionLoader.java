@@ -1,30 +1,43 @@
 package de.craften.craftenlauncher.logic.download;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import de.craften.craftenlauncher.exception.CraftenDownloadException;
+import de.craften.craftenlauncher.logic.json.JSONReader;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
 public class VersionLoader {
     private static final Logger LOGGER = LogManager.getLogger(VersionLoader.class);
+    private static final String MANIFEST_URL = "https://launchermeta.mojang.com/mc/game/version_manifest.json";
+    public static final String MANIFEST_FILE = "version_manifest.json";
 
-    public static List<String> getVersionStringList() {
-        String jsonString = DownloadHelper.downloadFileToString("https://launchermeta.mojang.com/mc/game/version_manifest.json");
-        JsonObject versionsJson = new Gson().fromJson(jsonString, JsonObject.class);
+    /**
+     * Returns the ids of all versions. The version list is kept in the given file and only downloaded
+     * again if it changed on the server. If the server can not be reached, the kept list is used.
+     *
+     * @param file path the version list is kept at
+     * @return
+     */
+    public static List<String> getVersionStringList(String file) {
+        try {
+            DownloadHelper.downloadMetadata(MANIFEST_URL, file);
+        } catch (CraftenDownloadException e) {
+            LOGGER.warn("Downloading versions list failed, using local versions only", e);
+            return new ArrayList<>();
+        }
 
-        if (versionsJson != null) {
-            List<String> versions = new ArrayList<>();
-            for (JsonElement version : versionsJson.getAsJsonArray("versions")) {
-                versions.add(version.getAsJsonObject().get("id").getAsString());
-            }
-            return versions;
-        } else {
-            LOGGER.warn("Downloading versions list failed, using local versions only");
-            return new ArrayList<>(); //TODO cache the versions or throw an exception
+        try (JsonReader reader = new JsonReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            return JSONReader.readVersions(reader);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Reading versions list failed, using local versions only", e);
+            return new ArrayList<>();
         }
     }
 }
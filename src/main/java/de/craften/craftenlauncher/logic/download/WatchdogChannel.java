@@ -0,0 +1,84 @@
+package de.craften.craftenlauncher.logic.download;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Channel which aborts a transfer that takes longer than its deadline or stalls, i.e. the server
+ * keeps the connection open but only trickles bytes. The read timeout of the connection only
+ * catches a server that sends nothing at all.
+ * <p>
+ * The throughput is measured over windows of a few seconds, a window below the minimal
+ * throughput aborts the transfer, so it can be retried on a new connection.
+ */
+class WatchdogChannel implements ReadableByteChannel {
+    private static final long WINDOW = TimeUnit.SECONDS.toNanos(10);
+
+    private final ReadableByteChannel mChannel;
+    private final String mName;
+    private final long mDeadline;
+    private final long mMinBytesPerWindow;
+    private long mWindowStart;
+    private long mWindowBytes;
+
+    /**
+     * @param channel           channel to read from
+     * @param name              name of the transfer used in error messages
+     * @param deadlineMillis    maximal duration of the transfer, 0 disables the deadline
+     * @param minBytesPerSecond minimal throughput, 0 disables the stall detection
+     */
+    WatchdogChannel(ReadableByteChannel channel, String name, long deadlineMillis, long minBytesPerSecond) {
+        long now = System.nanoTime();
+
+        this.mChannel = channel;
+        this.mName = name;
+        this.mDeadline = deadlineMillis > 0 ? now + TimeUnit.MILLISECONDS.toNanos(deadlineMillis) : 0;
+        this.mMinBytesPerWindow = minBytesPerSecond * TimeUnit.NANOSECONDS.toSeconds(WINDOW);
+        this.mWindowStart = now;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        int read = mChannel.read(dst);
+
+        if (read < 0) {
+            // the body is complete, a late end of stream is not a stall
+            return read;
+        }
+
+        long now = System.nanoTime();
+
+        if (mDeadline != 0 && now - mDeadline > 0) {
+            throw new SocketTimeoutException("Deadline exceeded while downloading " + mName);
+        }
+
+        if (read > 0) {
+            mWindowBytes += read;
+        }
+
+        if (now - mWindowStart >= WINDOW) {
+            if (mWindowBytes < mMinBytesPerWindow) {
+                throw new SocketTimeoutException("Download of " + mName + " stalled at "
+                        + mWindowBytes / TimeUnit.NANOSECONDS.toSeconds(WINDOW) + " bytes/s");
+            }
+
+            mWindowStart = now;
+            mWindowBytes = 0;
+        }
+
+        return read;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return mChannel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mChannel.close();
+    }
+}
@@ -0,0 +1,21 @@
+package de.craften.craftenlauncher.logic.download.loader;
+
+import java.util.List;
+
+import de.craften.craftenlauncher.logic.resources.ResEntry;
+
+/**
+ * Decides in which order the {@link RessourceDownloader} submits the asset objects to its workers.
+ *
+ * @see AssetOrders
+ */
+public interface AssetOrder {
+
+    /**
+     * Returns the objects in the order they should be downloaded.
+     *
+     * @param entries objects which have to be downloaded, must not be changed
+     * @return
+     */
+    List<ResEntry> order(List<ResEntry> entries);
+}
@@ -0,0 +1,84 @@
+package de.craften.craftenlauncher.logic.download.loader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import de.craften.craftenlauncher.logic.resources.ResEntry;
+
+/**
+ * The built-in orders for asset downloads.
+ */
+public enum AssetOrders implements AssetOrder {
+    /**
+     * Order of the asset index.
+     */
+    INDEX {
+        @Override
+        public List<ResEntry> order(List<ResEntry> entries) {
+            return new ArrayList<>(entries);
+        }
+    },
+    /**
+     * Biggest objects first, so no big object is started last and stretches out the end of the install.
+     */
+    LARGEST_FIRST {
+        @Override
+        public List<ResEntry> order(List<ResEntry> entries) {
+            return bySizeDescending(entries);
+        }
+    },
+    /**
+     * Biggest objects first, with the small ones spread evenly in between. While some connections
+     * transfer the big objects, the others keep working through the small ones.
+     */
+    INTERLEAVED {
+        @Override
+        public List<ResEntry> order(List<ResEntry> entries) {
+            List<ResEntry> sorted = bySizeDescending(entries);
+            int large = 0;
+
+            while (large < sorted.size() && sorted.get(large).getSize() >= LARGE_SIZE) {
+                large++;
+            }
+
+            if (large == 0 || large == sorted.size()) {
+                return sorted;
+            }
+
+            List<ResEntry> result = new ArrayList<>(sorted.size());
+            int small = sorted.size() - large;
+            int next = sorted.size() - 1;
+
+            // the i-th big object is followed by its share of the small ones, smallest first
+            for (int i = 0; i < large; i++) {
+                result.add(sorted.get(i));
+
+                int end = sorted.size() - 1 - (int) ((long) small * (i + 1) / large);
+                while (next > end) {
+                    result.add(sorted.get(next--));
+                }
+            }
+
+            return result;
+        }
+    };
+
+    /**
+     * Objects of at least this size count as big for {@link #INTERLEAVED}.
+     */
+    public static final int LARGE_SIZE = 256 * 1024;
+
+    private static List<ResEntry> bySizeDescending(List<ResEntry> entries) {
+        List<ResEntry> sorted = new ArrayList<>(entries);
+
+        Collections.sort(sorted, new Comparator<ResEntry>() {
+            @Override
+            public int compare(ResEntry a, ResEntry b) {
+                return a.getSize() > b.getSize() ? -1 : (a.getSize() == b.getSize() ? 0 : 1);
+            }
+        });
+        return sorted;
+    }
+}
@@ -2,6 +2,8 @@ package de.craften.craftenlauncher.logic.download.loader;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import de.craften.craftenlauncher.exception.CraftenDownloadException;
 import de.craften.craftenlauncher.logic.download.DownloadHelper;
@@ -16,7 +18,12 @@ import de.craften.util.OSHelper;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-public class LibraryDownloader implements Downloader {
+/**
+ * Downloads the libraries of a version and extracts their natives. The libraries are not downloaded
+ * here as a whole, DownloadService schedules every library and its natives as tasks of their own, so
+ * the install pipeline runs them concurrently.
+ */
+public class LibraryDownloader {
     private static final Logger LOGGER = LogManager.getLogger(LibraryDownloader.class);
     private MinecraftPath mMinecraftPath;
     private MinecraftVersion mCurrentVersion;
@@ -28,11 +35,19 @@ public class LibraryDownloader implements Downloader {
         this.mDownloadVM = downloadVM;
     }
 
-    @Override
-    public void download() throws CraftenDownloadException {
-        Version vers = JSONReader.readJsonFileFromSelectedVersion(mMinecraftPath.getMinecraftJarPath() + mCurrentVersion.getVersion() + ".json");
-
-        String libDir = mMinecraftPath.getLibraryDir();
+    /**
+     * Returns the libraries of the version which are needed on this os and are not external.
+     * The version file is only read if the version was not read before.
+     *
+     * @return
+     */
+    public List<LibEntry> getLibraries() {
+        Version vers = mCurrentVersion.getVersionJson();
+
+        if (vers == null) {
+            vers = JSONReader.readJsonFileFromSelectedVersion(mMinecraftPath.getMinecraftJarPath() + mCurrentVersion.getVersion() + ".json");
+        }
+        List<LibEntry> libraries = new ArrayList<>();
 
         for (LibEntry entry : vers.getLibraries().get()) {
 
@@ -53,36 +68,59 @@ public class LibraryDownloader implements Downloader {
                     }
                 }
 
-                String replaced = entry.getPath().replace(File.separator, "/");
-                String adress = DownloadUrls.URL_LIBRARIES + replaced + "/" + entry.getFileName();
-
-                LOGGER.info("File download started: " + entry.getFileName());
-
-                mDownloadVM.updateDownloadFile(entry.getFileName());
-                mDownloadVM.updateProgress(1);
+                libraries.add(entry);
+            }
+        }
 
-                try {
-                    DownloadHelper.downloadFileToDiskWithCheck(adress, libDir + entry.getPath(), entry.getFileName());
-                } catch (CraftenDownloadException e) {
-                    LOGGER.error("Could not download: " + entry.getFileName(), e);
-                    throw new CraftenDownloadException("Download failed: " + entry.getFileName());
-                }
+        return libraries;
+    }
 
-                if (entry.isExtractable()) {
+    /**
+     * Downloads a single library.
+     *
+     * @param entry
+     * @throws CraftenDownloadException if the library could not be downloaded
+     */
+    public void downloadLibrary(LibEntry entry) throws CraftenDownloadException {
+        String libDir = mMinecraftPath.getLibraryDir();
+        String replaced = entry.getPath().replace(File.separator, "/");
+        String adress = DownloadUrls.URL_LIBRARIES + replaced + "/" + entry.getFileName();
 
-                    String file = libDir + entry.getPath() + File.separator + entry.getFileName();
-                    String natives = mMinecraftPath.getMinecraftJarPath() + this.mCurrentVersion.getVersion() + "-natives-131231";
+        LOGGER.info("File download started: " + entry.getFileName());
 
-                    new File(natives).mkdirs();
+        mDownloadVM.updateDownloadFile(entry.getFileName());
+        mDownloadVM.updateProgress(1);
 
-                    try {
-                        DownloadHelper.unpackJarFile(file, natives);
-                    } catch (IOException e) {
-                        LOGGER.error("Unpacking jar ( " + file + " ) failed", e);
-                        throw new CraftenDownloadException("Unpacking jar failed: " + file);
-                    }
-                }
+        try {
+            if (entry.hasSha1()) {
+                DownloadHelper.downloadFileToDiskWithHash(adress, libDir + entry.getPath(), entry.getFileName(),
+                        entry.getSha1(), entry.getSize());
+            } else {
+                DownloadHelper.downloadFileToDiskWithCheck(adress, libDir + entry.getPath(), entry.getFileName());
             }
+        } catch (CraftenDownloadException e) {
+            LOGGER.error("Could not download: " + entry.getFileName(), e);
+            throw new CraftenDownloadException("Download failed: " + entry.getFileName());
+        }
+    }
+
+    /**
+     * Extracts the natives of an already downloaded library into the natives directory of the version.
+     *
+     * @param entry
+     * @throws CraftenDownloadException if the library could not be unpacked
+     */
+    public void extractNatives(LibEntry entry) throws CraftenDownloadException {
+        String file = mMinecraftPath.getLibraryDir() + entry.getPath() + File.separator + entry.getFileName();
+        String natives = mMinecraftPath.getMinecraftJarPath() + this.mCurrentVersion.getVersion() + "-natives-131231";
+
+        new File(natives).mkdirs();
+
+        try {
+            DownloadHelper.unpackJarFile(file, natives);
+        } catch (IOException e) {
+            LOGGER.error("Unpacking jar ( " + file + " ) failed", e);
+            throw new CraftenDownloadException("Unpacking jar failed: " + file);
         }
     }
 
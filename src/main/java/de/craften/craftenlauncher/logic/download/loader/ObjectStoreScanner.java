@@ -0,0 +1,66 @@
+package de.craften.craftenlauncher.logic.download.loader;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Lists the asset objects which are already present. The objects are stored as objects/xx/hash,
+ * walking the 256 directories once is much cheaper than checking every object on its own,
+ * especially on network drives. The size is taken from the directory listing where the file
+ * system provides it.
+ */
+class ObjectStoreScanner {
+    private static final Logger LOGGER = LogManager.getLogger(ObjectStoreScanner.class);
+
+    private ObjectStoreScanner() {
+    }
+
+    /**
+     * @param objectsDir the objects directory of the assets
+     * @return size of every present object by its hash
+     */
+    static Map<String, Long> scan(File objectsDir) {
+        final Map<String, Long> objects = new HashMap<>();
+
+        if (!objectsDir.isDirectory()) {
+            return objects;
+        }
+
+        long start = System.currentTimeMillis();
+
+        try {
+            Files.walkFileTree(objectsDir.toPath(), EnumSet.noneOf(FileVisitOption.class), 2, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile()) {
+                        objects.put(file.getFileName().toString(), attrs.size());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    LOGGER.warn("Could not read " + file);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            LOGGER.warn("Could not scan " + objectsDir, e);
+        }
+
+        LOGGER.info("Found " + objects.size() + " asset objects in " + (System.currentTimeMillis() - start) + " ms");
+        return objects;
+    }
+}
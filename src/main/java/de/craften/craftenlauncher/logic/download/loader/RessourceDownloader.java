@@ -2,30 +2,58 @@ package de.craften.craftenlauncher.logic.download.loader;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.concurrent.Callable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 
 import de.craften.craftenlauncher.exception.CraftenDownloadException;
+import de.craften.craftenlauncher.logic.download.ConcurrencyLimiter;
 import de.craften.craftenlauncher.logic.download.DownloadHelper;
 import de.craften.craftenlauncher.logic.download.DownloadUrls;
+import de.craften.craftenlauncher.logic.download.InstallJournal;
+import de.craften.craftenlauncher.logic.download.TransferGroup;
 import de.craften.craftenlauncher.logic.resources.Index;
 import de.craften.craftenlauncher.logic.resources.ResEntry;
 import de.craften.craftenlauncher.logic.version.MinecraftVersion;
 import de.craften.craftenlauncher.logic.vm.DownloadVM;
+import de.craften.util.HashHelper;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 public class RessourceDownloader implements Downloader {
     private static final Logger LOGGER = LogManager.getLogger(RessourceDownloader.class);
+    private static final int MIN_CONCURRENCY = 2;
+    private static final int MAX_CONCURRENCY = 32;
+    private static final int WINDOW = MAX_CONCURRENCY * 2;
+    private static volatile AssetOrder order = AssetOrders.INTERLEAVED;
+
+    /**
+     * What a task does with its object before the names are filled from the object store.
+     */
+    private enum Action {
+        DOWNLOAD, VERIFY, LINK
+    }
+
     private String mResDir, mResURL, mIndexesURL;
     private DownloadVM mAccess;
     private MinecraftVersion mVersion;
     private Index mIndex;
-    private boolean mDownloadable, mStop;
+    private boolean mDownloadable;
+    private volatile boolean mStop;
 
-    private ExecutorService executor;
+    private volatile ExecutorService executor;
+    private ConcurrencyLimiter mLimiter;
+    private final Set<String> mFailed = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final Object mPendingLock = new Object();
+    private int mPending;
+    private final Semaphore mWindow = new Semaphore(WINDOW);
 
     public RessourceDownloader(MinecraftVersion version, String resDir, DownloadVM access) {
         this.mResURL = DownloadUrls.URL_RESOURCES;
@@ -34,24 +62,24 @@ public class RessourceDownloader implements Downloader {
         this.mAccess = access;
         this.mVersion = version;
 
-        int poolSize = Runtime.getRuntime().availableProcessors();
+        int initial = Runtime.getRuntime().availableProcessors();
 
-        if (poolSize <= 4) {
-            poolSize *= 2;
+        if (initial <= 4) {
+            initial *= 2;
         }
 
-        LOGGER.debug("RessourceDownloader: PoolSize " + poolSize);
+        this.mLimiter = new ConcurrencyLimiter("Ressource download", initial, MIN_CONCURRENCY, MAX_CONCURRENCY);
 
-        this.executor = Executors.newFixedThreadPool(poolSize);
-
-        downloadIndexFile();
+        LOGGER.debug("RessourceDownloader: PoolSize " + MAX_CONCURRENCY);
     }
 
-    private void downloadIndexFile() {
+    /**
+     * Downloads the asset index of the version. Has to be called before {@link #download()}.
+     *
+     * @throws CraftenDownloadException if the index could not be downloaded
+     */
+    public void downloadIndex() throws CraftenDownloadException {
         String fs = File.separator;
-        boolean force = DownloadHelper.getForce();
-
-        DownloadHelper.setForce(true);
         String assets = "";
 
         if (mVersion.getVersionJson().hasAssets()) {
@@ -60,81 +88,331 @@ public class RessourceDownloader implements Downloader {
             assets = "legacy";
         }
 
+        String file = mResDir + fs + "indexes" + fs + assets + ".json";
+
         try {
-            DownloadHelper.downloadFileToDiskWithCheck(mIndexesURL + assets + ".json", mResDir + fs + "indexes" + fs, assets + ".json");
-            mIndex = new Index(mResDir + fs + "indexes" + fs + assets + ".json");
+            // the index may change for the same name, so it is revalidated on every start
+            DownloadHelper.downloadMetadata(mIndexesURL + assets + ".json", file);
+            mIndex = Index.load(file);
             mDownloadable = true;
         } catch (CraftenDownloadException e) {
             LOGGER.error("Could not download " + assets + ".json", e);
+            throw e;
         }
-
-        DownloadHelper.setForce(force);
     }
 
     @Override
     public void download() throws CraftenDownloadException {
-        ArrayList<String> files = new ArrayList<String>();
-        ArrayList<Future<String>> futures = new ArrayList<Future<String>>();
-
-
         if (!mDownloadable) {
             throw new CraftenDownloadException("Ressource not downloadable!");
         }
 
-        for (final ResEntry res : mIndex.getRes()) {
-            if (mStop) {
-                break;
+        Map<String, Long> store = DownloadHelper.getForce() ? Collections.<String, Long>emptyMap()
+                : ObjectStoreScanner.scan(new File(mResDir, "objects"));
+        List<ResEntry> missing = new ArrayList<>();
+        List<ResEntry> unverified = new ArrayList<>();
+        List<ResEntry> stored = new ArrayList<>();
+        Map<String, List<ResEntry>> names = new HashMap<>();
+        int skipped = 0;
+        long saved = 0;
+
+        for (int i = 0; i < mIndex.size(); i++) {
+            String hash = mIndex.getHash(i);
+            boolean inStore = isInStore(hash, mIndex.getSize(i), store);
+            boolean verified = inStore && isVerified(hash, mIndex.getSize(i));
+
+            if (verified && !mIndex.isVirtual()) {
+                skipped++;
+                continue;
             }
-            files.add(mResDir + res.getPath());
 
-            Future<String> f = executor.submit(getCallable(res));
-            futures.add(f);
+            ResEntry res = mIndex.get(i);
+
+            // every object is only put into the object store once, its names are filled from there
+            List<ResEntry> same = names.get(hash);
+            if (same == null) {
+                same = new ArrayList<>();
+                names.put(hash, same);
+                (verified ? stored : inStore ? unverified : missing).add(res);
+            }
+            if (inStore || same.size() > 0) {
+                saved += res.getSize();
+            }
+            same.add(res);
         }
 
-        //TODO Logging this on a lower warn level!
-        for (Future<String> s : futures) {
-            try {
-                files.remove(s.get());
-            } catch (Exception e) {
-                LOGGER.error("Error while handling future", e);
+        int submitted = 0;
+
+        LOGGER.info(skipped + " asset objects already present, downloading " + missing.size() + " in order " + order
+                + ", verifying " + unverified.size() + ", " + (mIndex.size() - skipped - missing.size() - unverified.size())
+                + " names (" + saved + " bytes) are filled from the object store");
+        mAccess.updateProgress(skipped);
+
+        List<ResEntry> tasks = order.order(missing);
+        tasks.addAll(unverified);
+        tasks.addAll(stored);
+
+        mFailed.clear();
+        executor = Executors.newFixedThreadPool(MAX_CONCURRENCY);
+
+        try {
+            for (int i = 0; i < tasks.size(); i++) {
+                ResEntry res = tasks.get(i);
+
+                if (mStop) {
+                    break;
+                }
+
+                // only a window of tasks exists at a time, the next one is created when a slot is free
+                mWindow.acquire();
+                if (mStop) {
+                    break;
+                }
+
+                synchronized (mPendingLock) {
+                    mPending++;
+                }
+                Action action = i < missing.size() ? Action.DOWNLOAD
+                        : i < missing.size() + unverified.size() ? Action.VERIFY : Action.LINK;
+                executor.execute(TransferGroup.wrap(getTask(res, names.get(res.getHash()), action)));
+                submitted++;
             }
+
+            awaitPending();
+        } catch (RejectedExecutionException e) {
+            LOGGER.info("Ressource downloads stopped");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CraftenDownloadException("Interrupted while downloading ressources");
+        } finally {
+            executor.shutdown();
+        }
+
+        LOGGER.info("Ressource downloads finished with a concurrency of " + mLimiter.getLimit());
+        if (DownloadHelper.getHedgingPolicy() != null) {
+            DownloadHelper.getHedgingPolicy().logStatistics();
+        }
+        checkDownloadedFilesNumber(submitted);
+    }
+
+    /**
+     * Sets the order in which asset objects are downloaded, {@link AssetOrders#INTERLEAVED} by default.
+     *
+     * @param order
+     */
+    public static void setOrder(AssetOrder order) {
+        RessourceDownloader.order = order;
+    }
+
+    public static AssetOrder getOrder() {
+        return order;
+    }
+
+    private void awaitPending() throws InterruptedException {
+        synchronized (mPendingLock) {
+            while (mPending > 0 && !mStop) {
+                mPendingLock.wait();
+            }
+        }
+    }
+
+    /**
+     * Returns true if an object with the expected size is in the object store.
+     *
+     * @param hash
+     * @param size
+     * @param store sizes of the objects in the store by hash
+     * @return
+     */
+    private static boolean isInStore(String hash, int size, Map<String, Long> store) {
+        Long stored = store.get(hash);
+        return stored != null && stored == size;
+    }
+
+    /**
+     * Returns true if the object is recorded in the journal and did not change since. This launcher
+     * only moves objects into place after their checksum was verified and records them then. Objects
+     * which are not in the journal, i.e. written by an older launcher, are verified by the download
+     * tasks, so verifying and downloading run at the same time.
+     *
+     * @param hash
+     * @param size
+     * @return
+     */
+    private boolean isVerified(String hash, int size) {
+        InstallJournal journal = DownloadHelper.getJournal();
+        return journal != null && journal.isVerified(getObject(hash), hash, size);
+    }
+
+    private File getObject(String hash) {
+        return new File(new File(mResDir, "objects"), hash.substring(0, 2) + File.separator + hash);
+    }
+
+    /**
+     * Checks an object of the store which is not in the journal by its checksum and records it.
+     *
+     * @param res
+     * @param object path of the object in the store
+     * @return true if the object is valid
+     */
+    private boolean verify(ResEntry res, File object) {
+        if (!HashHelper.isSha1Equal(object, res.getHash())) {
+            LOGGER.warn("Checksum mismatch, downloading again: " + object);
+            return false;
         }
 
-        checkDownloadedFilesNumber(files);
-        executor.shutdown();
+        InstallJournal journal = DownloadHelper.getJournal();
+        if (journal != null) {
+            journal.record(object, res.getHash());
+        }
+        return true;
     }
 
-    private Callable<String> getCallable(final ResEntry res) {
-        final String file = mResDir + res.getPath();
+    private Runnable getTask(final ResEntry res, final List<ResEntry> names, final Action action) {
+        final File object = new File(mResDir + res.getObjectPath());
 
-        return new Callable<String>() {
+        return new Runnable() {
 
             @Override
-            public String call() throws Exception {
-                LOGGER.info("File Download started: " + file);
-                mAccess.updateDownloadFile(res.getName());
+            public void run() {
+                boolean success = false;
 
                 try {
-                    DownloadHelper.downloadFileToDiskWithoutCheck(mResURL + res.getDownloadPath(), file);
+                    if (action == Action.DOWNLOAD && !adopt(res, object)
+                            || action == Action.VERIFY && !verify(res, object)) {
+                        fetch(res, object);
+                    }
+                    success = copy(object, names);
                 } catch (CraftenDownloadException e) {
                     LOGGER.error("Could not download " + res.getName(), e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    LOGGER.error("Unexpected error while downloading " + res.getName(), e);
+                } finally {
+                    if (!success) {
+                        mFailed.add(res.getName() + " (" + res.getHash() + ")");
+                    }
+
+                    mWindow.release();
+                    synchronized (mPendingLock) {
+                        if (--mPending == 0) {
+                            mPendingLock.notifyAll();
+                        }
+                    }
                 }
-                mAccess.updateProgress(1);
-                return file;
             }
         };
     }
 
-    private void checkDownloadedFilesNumber(ArrayList<String> files) {
-        if (files.size() == 0) {
+    /**
+     * Downloads an object into the object store.
+     *
+     * @param res
+     * @param object path of the object in the store
+     * @throws CraftenDownloadException if the object could not be downloaded
+     * @throws InterruptedException
+     */
+    private void fetch(ResEntry res, File object) throws CraftenDownloadException, InterruptedException {
+        boolean success = false;
+
+        mLimiter.acquire();
+        long start = System.currentTimeMillis();
+
+        try {
+            LOGGER.info("File Download started: " + object);
+            mAccess.updateDownloadFile(res.getName());
+
+            DownloadHelper.downloadFileToDiskWithHash(mResURL + res.getDownloadPath(), object.getPath(), res.getHash(), res.getSize());
+            success = true;
+        } finally {
+            mLimiter.release(success, System.currentTimeMillis() - start, res.getSize());
+            mAccess.setConcurrentDownloads(mLimiter.getLimit());
+        }
+    }
+
+    /**
+     * Older versions of the launcher downloaded virtual assets directly to their names. Such a file
+     * is taken into the object store instead of downloading it again.
+     *
+     * @param res
+     * @param object path of the object in the store
+     * @return true if the object was taken from its named file
+     * @throws CraftenDownloadException if the named file could not be linked into the store
+     */
+    private boolean adopt(ResEntry res, File object) throws CraftenDownloadException {
+        File named = new File(mResDir + res.getPath());
+
+        if (!res.isVirtual() || DownloadHelper.getForce() || !named.isFile() || named.length() != res.getSize()
+                || !HashHelper.isSha1Equal(named, res.getHash())) {
+            return false;
+        }
+
+        DownloadHelper.linkFile(named, object, res.getHash(), res.getSize());
+        return true;
+    }
+
+    /**
+     * Fills the paths of all entries of an object from the object store. Objects of a virtual index are
+     * hard linked to their names, so they take no extra space and no traffic.
+     *
+     * @param object path of the object in the store
+     * @param names  entries with the hash of the object
+     * @return true if all paths were filled
+     */
+    private boolean copy(File object, List<ResEntry> names) {
+        boolean success = true;
+
+        for (ResEntry name : names) {
+            File target = new File(mResDir + name.getPath());
+
+            if (target.equals(object)) {
+                mAccess.updateProgress(1);
+                continue;
+            }
+
+            try {
+                DownloadHelper.linkFile(object, target, name.getHash(), name.getSize());
+                mAccess.updateProgress(1);
+            } catch (CraftenDownloadException e) {
+                LOGGER.error("Could not copy " + name.getName(), e);
+                success = false;
+            }
+        }
+        return success;
+    }
+
+    /**
+     * @param submitted number of objects that were submitted for download
+     * @throws CraftenDownloadException if objects are missing, so the download is tried again
+     */
+    private void checkDownloadedFilesNumber(int submitted) throws CraftenDownloadException {
+        if (mFailed.isEmpty()) {
             LOGGER.info("Finished with all Ressource-Downloads");
         } else {
-            LOGGER.error("Not all files where removed from files-list");
+            LOGGER.error(mFailed.size() + " of " + submitted + " asset objects could not be downloaded: " + mFailed);
+
+            if (!mStop) {
+                throw new CraftenDownloadException(mFailed.size() + " asset objects could not be downloaded");
+            }
         }
     }
 
+    /**
+     * Stops the download. Tasks which did not start yet are dropped, running ones are interrupted.
+     */
     public void stopDownload() {
         mStop = true;
-        executor.shutdown();
+
+        ExecutorService current = executor;
+        if (current != null) {
+            current.shutdownNow();
+        }
+
+        // wakes up the producer waiting for a free slot and download() waiting for the pending tasks
+        mWindow.release(WINDOW);
+        synchronized (mPendingLock) {
+            mPendingLock.notifyAll();
+        }
     }
 }
@@ -2,13 +2,15 @@ package de.craften.craftenlauncher.logic.download.loader;
 
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
-import java.net.URL;
 
 import javax.imageio.ImageIO;
 
 import de.craften.craftenlauncher.exception.CraftenDownloadException;
 import de.craften.craftenlauncher.logic.download.DownloadUrls;
+import de.craften.craftenlauncher.logic.download.HttpTransport;
 import de.craften.craftenlauncher.logic.vm.SkinVM;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -29,22 +31,28 @@ public class SkinDownloader implements Downloader {
 
         String url = DownloadUrls.URL_SKINS;
 
-        URL skinURL;
+        HttpURLConnection connection;
         try {
-            skinURL = new URL(url + mUsername + ".png");
+            connection = HttpTransport.open(url + mUsername + ".png");
         } catch (MalformedURLException e) {
             LOGGER.error("Skin URL error", e);
             throw new CraftenDownloadException("SkinURL-Error!", e);
+        } catch (IOException e) {
+            LOGGER.error("Could not download skin", e);
+            throw new CraftenDownloadException("Skin Download-Error!");
         }
 
-
+        InputStream in = null;
         try {
-            BufferedImage img = ImageIO.read(skinURL);
+            in = connection.getInputStream();
+            BufferedImage img = ImageIO.read(in);
             mSkinVm.setSkinDownloaded(img);
             LOGGER.debug("Skin downloaded");
         } catch (IOException e) {
             LOGGER.error("Could not download skin", e);
             throw new CraftenDownloadException("Skin Download-Error!");
+        } finally {
+            HttpTransport.release(connection, in);
         }
     }
 
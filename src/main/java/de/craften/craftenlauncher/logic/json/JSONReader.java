@@ -7,10 +7,11 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
 
 import de.craften.craftenlauncher.logic.auth.Profiles;
 import de.craften.craftenlauncher.logic.auth.MinecraftUser;
-import de.craften.craftenlauncher.logic.download.DownloadHelper;
+import de.craften.craftenlauncher.logic.resources.ModelSnapshot;
 import de.craften.craftenlauncher.logic.resources.Version;
 import de.craften.util.OSHelper;
 import org.apache.logging.log4j.LogManager;
@@ -19,8 +20,22 @@ import org.apache.logging.log4j.Logger;
 public class JSONReader {
     private static final Logger LOGGER = LogManager.getLogger(JSONReader.class);
 
+    /**
+     * Reads a version file. The binary snapshot of the file is used if the file did not change since
+     * it was written, otherwise the file is parsed and the snapshot is written again.
+     *
+     * @param path
+     * @return
+     */
     public static Version readJsonFileFromSelectedVersion(String path) {
-        Version version = new Version();
+        Version version = ModelSnapshot.readVersion(path);
+
+        if (version != null) {
+            LOGGER.debug("Version loaded from snapshot: " + path);
+            return version;
+        }
+
+        version = new Version();
         JsonObject jsonObject = readJson(path);
 
         if (jsonObject != null) {
@@ -51,29 +66,45 @@ public class JSONReader {
 
             version.setMinimumLauncherVersion(jsonObject.get("minimumLauncherVersion").getAsInt());
             LOGGER.debug("Minimum Launcher Version: " + version.getMinimumLauncherVersion());
+
+            ModelSnapshot.writeVersion(path, version);
         }
         return version;
     }
 
-    public static ArrayList<String> readVersions(String url) {
+    /**
+     * Reads the ids of all versions from a version manifest. Everything else is skipped while reading.
+     *
+     * @param reader
+     * @return
+     * @throws IOException if the manifest could not be read
+     */
+    public static ArrayList<String> readVersions(JsonReader reader) throws IOException {
         ArrayList<String> versions = new ArrayList<String>();
 
-        JsonParser parser = new JsonParser();
-        JsonObject jsonObject = new JsonObject();
-        if (!url.isEmpty()) {
-            String versionsJSON = DownloadHelper.downloadFileToString(url);
-            Object obj = parser.parse(versionsJSON);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!reader.nextName().equals("versions")) {
+                reader.skipValue();
+                continue;
+            }
 
-            jsonObject = (JsonObject) obj;
-        }
-        if (jsonObject != null) {
-            if (jsonObject.has("versions")) {
-                JsonArray jsonVersions = jsonObject.get("versions").getAsJsonArray();
-                for (int i = 0; i < jsonVersions.size(); i++) {
-                    versions.add(jsonVersions.get(i).getAsJsonObject().get("id").getAsString());
+            reader.beginArray();
+            while (reader.hasNext()) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (reader.nextName().equals("id")) {
+                        versions.add(reader.nextString());
+                    } else {
+                        reader.skipValue();
+                    }
                 }
+                reader.endObject();
             }
+            reader.endArray();
         }
+        reader.endObject();
+
         return versions;
     }
 
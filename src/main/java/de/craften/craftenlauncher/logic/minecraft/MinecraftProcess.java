@@ -50,8 +50,6 @@ public class MinecraftProcess {
 
         if (minecraft == null) {
             LOGGER.error("Minecraft Process Null");
-        } else {
-            // TODO: Problems with Standard-Output are not yet fixed.
         }
     }
 
@@ -65,6 +63,9 @@ public class MinecraftProcess {
 
         ProcessBuilder pb = new ProcessBuilder(mParams);
         pb.directory(new File(mInfo.getMinecraftPath().getMinecraftDir()));
+        // the launcher may stay alive while assets are downloaded, an unread pipe would block Minecraft
+        pb.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+        pb.redirectError(ProcessBuilder.Redirect.INHERIT);
 
         return pb.start();
     }
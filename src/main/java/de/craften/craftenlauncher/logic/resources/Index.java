@@ -1,70 +1,151 @@
 package de.craften.craftenlauncher.logic.resources;
 
-import com.google.gson.JsonElement;
-import com.google.gson.JsonNull;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import de.craften.util.HashHelper;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
+/**
+ * Asset index of a version. The objects are stored in a few primitive arrays instead of one object
+ * per entry: the SHA-1 checksums as raw 20 byte values, the sizes and the names in a shared char pool.
+ * {@link ResEntry} objects are only created when they are asked for.
+ */
 public class Index {
     private static final Logger LOGGER = LogManager.getLogger(Index.class);
+    static final int HASH_LENGTH = 20;
     private String mPath;
-    private ArrayList<ResEntry> mList;
     private boolean mVirtual;
 
+    private int mCount;
+    private byte[] mHashes = new byte[64 * HASH_LENGTH];
+    private int[] mSizes = new int[64];
+    private int[] mNameEnds = new int[64];
+    private char[] mNames = new char[64 * 32];
+    private int mNamesLength;
+    private boolean mValid;
+
     public Index(String path) {
         this.mPath = path;
-        mList = new ArrayList<>();
 
         buildIndex();
     }
 
-    private void buildIndex() {
-        JsonParser parser = new JsonParser();
-
-        try (FileReader reader = new FileReader(mPath)) {
-            Object obj = parser.parse(reader);
-
-            if (obj != null && !(obj instanceof JsonNull)) {
-                JsonObject jObject = (JsonObject) obj;
+    Index(String path, boolean virtual, int count, byte[] hashes, int[] sizes, int[] nameEnds, char[] names) {
+        this.mPath = path;
+        this.mVirtual = virtual;
+        this.mCount = count;
+        this.mHashes = hashes;
+        this.mSizes = sizes;
+        this.mNameEnds = nameEnds;
+        this.mNames = names;
+        this.mNamesLength = names.length;
+    }
 
-                if (jObject.has("virtual")) {
-                    if (jObject.get("virtual").getAsString().equals("true"))
-                        setVirtual(true);
-                    else if (jObject.get("virtual").getAsString().equals("false"))
-                        setVirtual(false);
+    /**
+     * Loads the index from its binary snapshot if the JSON file did not change since it was written,
+     * otherwise the JSON file is parsed and the snapshot is written again.
+     *
+     * @param path path of the JSON file
+     * @return
+     */
+    public static Index load(String path) {
+        Index index = ModelSnapshot.readIndex(path);
+
+        if (index == null) {
+            index = new Index(path);
+            if (index.mValid) {
+                ModelSnapshot.writeIndex(path, index);
+            }
+        } else {
+            LOGGER.debug("Asset index loaded from snapshot: " + path);
+        }
+        return index;
+    }
 
+    /**
+     * Reads the index as a stream in a single pass.
+     */
+    private void buildIndex() {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(new FileInputStream(mPath), StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+
+                if (name.equals("virtual")) {
+                    setVirtual(reader.peek() == JsonToken.BOOLEAN ? reader.nextBoolean() : Boolean.parseBoolean(reader.nextString()));
+                } else if (name.equals("objects")) {
+                    readObjects(reader);
+                } else {
+                    reader.skipValue();
                 }
+            }
+            reader.endObject();
+            mValid = true;
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            LOGGER.warn("Could not read file", e);
+        }
+    }
 
-                if (jObject.has("objects")) {
-                    for (Map.Entry<String, JsonElement> entry : jObject.getAsJsonObject("objects").entrySet()) {
-
-
-                        JsonObject res = (JsonObject) entry.getValue();
+    private void readObjects(JsonReader reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String objectName = reader.nextName();
+            String hash = null;
+            int size = 0;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+
+                if (name.equals("hash")) {
+                    hash = reader.nextString();
+                } else if (name.equals("size")) {
+                    size = reader.nextInt();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
 
-                        ResEntry resEntry = new ResEntry();
-                        resEntry.setName(entry.getKey());
-                        if (res.has("hash"))
-                            resEntry.setHash(res.get("hash").getAsString());
-                        if (res.has("size"))
-                            resEntry.setSize(res.get("size").getAsInt());
+            try {
+                add(objectName, HashHelper.fromHex(hash), size);
+            } catch (IllegalArgumentException | NullPointerException e) {
+                LOGGER.warn("Skipping asset with invalid hash: " + objectName + " (" + hash + ")");
+            }
+        }
+        reader.endObject();
+    }
 
-                        resEntry.setVirtual(isVirtual());
+    private void add(String name, byte[] hash, int size) {
+        if (hash.length != HASH_LENGTH) {
+            throw new IllegalArgumentException("Not a SHA-1 checksum");
+        }
 
-                        mList.add(resEntry);
-                    }
-                }
-            }
-        } catch (IOException e) {
-            LOGGER.warn("Could not read file", e);
+        if (mCount == mSizes.length) {
+            int capacity = mCount * 2;
+            mHashes = Arrays.copyOf(mHashes, capacity * HASH_LENGTH);
+            mSizes = Arrays.copyOf(mSizes, capacity);
+            mNameEnds = Arrays.copyOf(mNameEnds, capacity);
+        }
+        if (mNamesLength + name.length() > mNames.length) {
+            mNames = Arrays.copyOf(mNames, Math.max(mNames.length * 2, mNamesLength + name.length()));
         }
+
+        System.arraycopy(hash, 0, mHashes, mCount * HASH_LENGTH, HASH_LENGTH);
+        mSizes[mCount] = size;
+        name.getChars(0, name.length(), mNames, mNamesLength);
+        mNamesLength += name.length();
+        mNameEnds[mCount] = mNamesLength;
+        mCount++;
     }
 
     public void setVirtual(boolean virtual) {
@@ -75,7 +156,85 @@ public class Index {
         return mVirtual;
     }
 
+    /**
+     * Returns the number of objects in the index.
+     *
+     * @return
+     */
+    public int size() {
+        return mCount;
+    }
+
+    public String getName(int index) {
+        checkIndex(index);
+
+        int start = index == 0 ? 0 : mNameEnds[index - 1];
+        return new String(mNames, start, mNameEnds[index] - start);
+    }
+
+    public String getHash(int index) {
+        checkIndex(index);
+        return HashHelper.toHex(mHashes, index * HASH_LENGTH, HASH_LENGTH);
+    }
+
+    public int getSize(int index) {
+        checkIndex(index);
+        return mSizes[index];
+    }
+
+    byte[] getHashes() {
+        return mHashes;
+    }
+
+    int getNameEnd(int index) {
+        return mNameEnds[index];
+    }
+
+    char[] getNames() {
+        return mNames;
+    }
+
+    int getNamesLength() {
+        return mNamesLength;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= mCount) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mCount);
+        }
+    }
+
+    /**
+     * Creates an entry for the object at the given position.
+     *
+     * @param index
+     * @return
+     */
+    public ResEntry get(int index) {
+        ResEntry entry = new ResEntry();
+        entry.setName(getName(index));
+        entry.setHash(getHash(index));
+        entry.setSize(getSize(index));
+        entry.setVirtual(mVirtual);
+        return entry;
+    }
+
+    /**
+     * Returns all objects as a list which creates the entries on access.
+     *
+     * @return
+     */
     public List<ResEntry> getRes() {
-        return mList;
+        return new AbstractList<ResEntry>() {
+            @Override
+            public ResEntry get(int index) {
+                return Index.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return mCount;
+            }
+        };
     }
 }
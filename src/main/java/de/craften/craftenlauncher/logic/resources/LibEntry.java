@@ -8,7 +8,8 @@ import de.craften.util.OSHelper;
 import java.io.File;
 
 public class LibEntry {
-    private String mName, mPath, mFilename, mUrl;
+    private String mName, mPath, mFilename, mUrl, mSha1;
+    private long mSize = -1;
     private Rules[] mRules;
     private Natives mNatives;
     private boolean mExtractable;
@@ -63,6 +64,18 @@ public class LibEntry {
         return mUrl;
     }
 
+    public String getSha1() {
+        return mSha1;
+    }
+
+    public long getSize() {
+        return mSize;
+    }
+
+    public boolean hasSha1() {
+        return mSha1 != null;
+    }
+
     public void setName(String name) {
         this.mName = name;
 
@@ -105,6 +118,65 @@ public class LibEntry {
             this.mNatives.setOsx(natives.get("osx").getAsString());
     }
 
+    /**
+     * Reads the checksum and size from the "downloads" section of a library. For natives the
+     * classifier of the current os is used, otherwise the main artifact.
+     *
+     * @param downloads
+     */
+    public void setDownloads(JsonObject downloads) {
+        JsonObject artifact = null;
+
+        if (isNativ()) {
+            String classifier = getNativesClassifier();
+            if (classifier != null && downloads.has("classifiers")
+                    && downloads.getAsJsonObject("classifiers").has(classifier)) {
+                artifact = downloads.getAsJsonObject("classifiers").getAsJsonObject(classifier);
+            }
+        } else if (downloads.has("artifact")) {
+            artifact = downloads.getAsJsonObject("artifact");
+        }
+
+        if (artifact != null) {
+            if (artifact.has("sha1"))
+                this.mSha1 = artifact.get("sha1").getAsString();
+            if (artifact.has("size"))
+                this.mSize = artifact.get("size").getAsLong();
+        }
+    }
+
+    private String getNativesClassifier() {
+        String classifier = null;
+
+        if (OSHelper.getOSasEnum() == OS.WINDOWS)
+            classifier = this.mNatives.getWindows();
+        else if (OSHelper.getOSasEnum() == OS.LINUX)
+            classifier = this.mNatives.getLinux();
+        else if (OSHelper.getOSasEnum() == OS.OSX)
+            classifier = this.mNatives.getOsx();
+
+        if (classifier != null) {
+            classifier = classifier.replace("${arch}", OSHelper.getOSArch());
+        }
+        return classifier;
+    }
+
+    public void setNatives(Natives natives) {
+        this.mNatives = natives;
+    }
+
+    public void setRules(Rules[] rules) {
+        this.mRules = rules;
+    }
+
+    public void setSha1(String sha1) {
+        this.mSha1 = sha1;
+    }
+
+    public void setSize(long size) {
+        this.mSize = size;
+    }
+
     public void setExtractable(boolean value) {
         this.mExtractable = value;
     }
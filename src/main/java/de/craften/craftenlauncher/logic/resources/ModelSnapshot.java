@@ -0,0 +1,388 @@
+package de.craften.craftenlauncher.logic.resources;
+
+import de.craften.util.HashHelper;
+import de.craften.util.OSHelper;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Binary snapshots of parsed asset indexes and version files. A snapshot is stored next to its JSON
+ * source and is used instead of parsing the source as long as the source did not change, which is
+ * checked by its size, modification time and SHA-1 checksum. The body of a snapshot is read at once
+ * into a buffer on load, it is not mapped so that the file is never locked when it is replaced.
+ * <p>
+ * A missing, outdated or unreadable snapshot is ignored, the source is parsed then and the snapshot
+ * is written again.
+ */
+public final class ModelSnapshot {
+    private static final Logger LOGGER = LogManager.getLogger(ModelSnapshot.class);
+    private static final String SUFFIX = ".bin";
+    private static final int MAGIC = 0x43534e50;
+    private static final int FORMAT = 1;
+    private static final int KIND_INDEX = 1;
+    private static final int KIND_VERSION = 2;
+    private static final int HASH_LENGTH = 20;
+
+    private ModelSnapshot() {
+    }
+
+    /**
+     * Reads the snapshot of an asset index.
+     *
+     * @param source path of the JSON file
+     * @return the index or null if there is no valid snapshot
+     */
+    public static Index readIndex(String source) {
+        ByteBuffer body = open(new File(source), KIND_INDEX);
+
+        if (body == null) {
+            return null;
+        }
+
+        try {
+            boolean virtual = body.get() != 0;
+            int count = body.getInt();
+            int namesLength = body.getInt();
+            byte[] hashes = new byte[count * Index.HASH_LENGTH];
+            int[] sizes = new int[count];
+            int[] nameEnds = new int[count];
+            char[] names = new char[namesLength];
+
+            body.get(hashes);
+            body.asIntBuffer().get(sizes);
+            body.position(body.position() + count * 4);
+            body.asIntBuffer().get(nameEnds);
+            body.position(body.position() + count * 4);
+            body.asCharBuffer().get(names);
+
+            return new Index(source, virtual, count, hashes, sizes, nameEnds, names);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not read snapshot of " + source, e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the snapshot of an asset index.
+     *
+     * @param source path of the JSON file the index was read from
+     * @param index
+     */
+    public static void writeIndex(String source, Index index) {
+        File temp = create(new File(source), KIND_INDEX);
+
+        if (temp == null) {
+            return;
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp, true)))) {
+            int count = index.size();
+
+            out.writeBoolean(index.isVirtual());
+            out.writeInt(count);
+            out.writeInt(index.getNamesLength());
+            out.write(index.getHashes(), 0, count * Index.HASH_LENGTH);
+            for (int i = 0; i < count; i++) {
+                out.writeInt(index.getSize(i));
+            }
+            for (int i = 0; i < count; i++) {
+                out.writeInt(index.getNameEnd(i));
+            }
+            out.writeChars(new String(index.getNames(), 0, index.getNamesLength()));
+        } catch (IOException e) {
+            LOGGER.warn("Could not write snapshot of " + source, e);
+            temp.delete();
+            return;
+        }
+
+        replace(temp, new File(source + SUFFIX));
+    }
+
+    /**
+     * Reads the snapshot of a version file.
+     *
+     * @param source path of the JSON file
+     * @return the version or null if there is no valid snapshot
+     */
+    public static Version readVersion(String source) {
+        ByteBuffer body = open(new File(source), KIND_VERSION);
+
+        if (body == null) {
+            return null;
+        }
+
+        try {
+            Version version = new Version();
+            version.setId(getString(body));
+            version.setTime(getString(body));
+            version.setReleaseTime(getString(body));
+            version.setType(getString(body));
+            version.setAssets(getString(body));
+            version.setMinecraftArguments(getString(body));
+            version.setMainClass(getString(body));
+            version.setMinimumLauncherVersion(body.getInt());
+
+            Libraries libraries = new Libraries();
+            int count = body.getInt();
+
+            for (int i = 0; i < count; i++) {
+                libraries.add(getLibrary(body));
+            }
+            version.setLibraries(libraries);
+
+            return version;
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not read snapshot of " + source, e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the snapshot of a version file.
+     *
+     * @param source  path of the JSON file the version was read from
+     * @param version
+     */
+    public static void writeVersion(String source, Version version) {
+        File temp = create(new File(source), KIND_VERSION);
+
+        if (temp == null) {
+            return;
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp, true)))) {
+            putString(out, version.getId());
+            putString(out, version.getTime());
+            putString(out, version.getReleaseTime());
+            putString(out, version.getType());
+            putString(out, version.getAssets());
+            putString(out, version.getMinecraftArguments());
+            putString(out, version.getMainClass());
+            out.writeInt(version.getMinimumLauncherVersion());
+
+            List<LibEntry> libraries = version.getLibraries() != null ? version.getLibraries().get() : null;
+            out.writeInt(libraries != null ? libraries.size() : 0);
+            if (libraries != null) {
+                for (LibEntry entry : libraries) {
+                    putLibrary(out, entry);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Could not write snapshot of " + source, e);
+            temp.delete();
+            return;
+        }
+
+        replace(temp, new File(source + SUFFIX));
+    }
+
+    private static LibEntry getLibrary(ByteBuffer body) {
+        LibEntry entry = new LibEntry();
+
+        // natives first, they are part of the file name which is built from the name
+        if (body.get() != 0) {
+            entry.setNatives(new Natives(getString(body), getString(body), getString(body)));
+        }
+        entry.setName(getString(body));
+        entry.setUrl(getString(body));
+        entry.setSha1(getString(body));
+        entry.setSize(body.getLong());
+        entry.setExtractable(body.get() != 0);
+
+        int rules = body.getInt();
+        if (rules >= 0) {
+            Rules[] result = new Rules[rules];
+
+            for (int i = 0; i < rules; i++) {
+                result[i] = new Rules(getString(body));
+                if (body.get() != 0) {
+                    result[i].setOs(new Os(getString(body), getString(body)));
+                }
+            }
+            entry.setRules(result);
+        }
+        return entry;
+    }
+
+    private static void putLibrary(DataOutputStream out, LibEntry entry) throws IOException {
+        Natives natives = entry.getNatives();
+
+        out.writeBoolean(natives != null);
+        if (natives != null) {
+            putString(out, natives.getLinux());
+            putString(out, natives.getWindows());
+            putString(out, natives.getOsx());
+        }
+        putString(out, entry.getName());
+        putString(out, entry.getUrl());
+        putString(out, entry.getSha1());
+        out.writeLong(entry.getSize());
+        out.writeBoolean(entry.isExtractable());
+
+        Rules[] rules = entry.getRules();
+        out.writeInt(rules != null ? rules.length : -1);
+        if (rules != null) {
+            for (Rules rule : rules) {
+                putString(out, rule.getAction());
+                out.writeBoolean(rule.getOs() != null);
+                if (rule.getOs() != null) {
+                    putString(out, rule.getOs().getName());
+                    putString(out, rule.getOs().getVersion());
+                }
+            }
+        }
+    }
+
+    private static String getString(ByteBuffer body) {
+        int length = body.getInt();
+
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void putString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Libraries and natives are chosen for the os and architecture when the version is parsed.
+     *
+     * @return
+     */
+    private static String getPlatform() {
+        return OSHelper.getOSasString() + "-" + OSHelper.getOSArch();
+    }
+
+    /**
+     * Checks the header of the snapshot of the given source and reads its body.
+     *
+     * @param source
+     * @param kind
+     * @return the body or null if there is no valid snapshot
+     */
+    private static ByteBuffer open(File source, int kind) {
+        File snapshot = new File(source.getPath() + SUFFIX);
+
+        if (!snapshot.isFile() || !source.isFile()) {
+            return null;
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(snapshot, "r")) {
+            FileChannel channel = file.getChannel();
+            DataInputStream in = new DataInputStream(Channels.newInputStream(channel));
+
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT || in.readInt() != kind
+                    || !in.readUTF().equals(getPlatform()) || in.readLong() != source.length()) {
+                LOGGER.debug("Snapshot of " + source + " is outdated");
+                return null;
+            }
+
+            long modifiedPosition = channel.position();
+            long modified = in.readLong();
+            byte[] sha1 = new byte[HASH_LENGTH];
+            in.readFully(sha1);
+
+            if (modified != source.lastModified()) {
+                // the source was written again, i.e. downloaded once more
+                if (!Arrays.equals(sha1, HashHelper.fromHex(HashHelper.sha1(source)))) {
+                    LOGGER.debug("Snapshot of " + source + " is outdated");
+                    return null;
+                }
+                touch(snapshot, modifiedPosition, source.lastModified());
+            }
+
+            long position = channel.position();
+            ByteBuffer body = ByteBuffer.allocate((int) (channel.size() - position));
+
+            while (body.hasRemaining()) {
+                if (channel.read(body, position + body.position()) < 0) {
+                    throw new EOFException("Snapshot is truncated");
+                }
+            }
+            body.flip();
+            return body;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Could not read snapshot of " + source, e);
+            return null;
+        }
+    }
+
+    private static void touch(File snapshot, long position, long modified) {
+        try (RandomAccessFile file = new RandomAccessFile(snapshot, "rw")) {
+            ByteBuffer buffer = ByteBuffer.allocate(8);
+            buffer.putLong(modified).flip();
+            file.getChannel().write(buffer, position);
+        } catch (IOException e) {
+            LOGGER.debug("Could not update snapshot " + snapshot, e);
+        }
+    }
+
+    /**
+     * Writes the header of a snapshot of the given source into a temporary file.
+     *
+     * @param source
+     * @param kind
+     * @return the temporary file or null if the header could not be written
+     */
+    private static File create(File source, int kind) {
+        File temp = new File(source.getPath() + SUFFIX + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeInt(kind);
+            out.writeUTF(getPlatform());
+            out.writeLong(source.length());
+            out.writeLong(source.lastModified());
+            out.write(HashHelper.fromHex(HashHelper.sha1(source)));
+            return temp;
+        } catch (IOException e) {
+            LOGGER.warn("Could not write snapshot of " + source, e);
+            temp.delete();
+            return null;
+        }
+    }
+
+    private static void replace(File temp, File snapshot) {
+        try {
+            try {
+                Files.move(temp.toPath(), snapshot.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            LOGGER.debug("Snapshot written: " + snapshot);
+        } catch (IOException e) {
+            LOGGER.warn("Could not replace snapshot " + snapshot, e);
+            temp.delete();
+        }
+    }
+}
@@ -48,10 +48,21 @@ public class ResEntry {
         if (mVirtual) {
             return "virtual" + fs + "legacy" + fs + getName();
         } else {
-            return "objects" + fs + getHash().substring(0, 2) + fs + getHash();
+            return getObjectPath();
         }
     }
 
+    /**
+     * Returns the path of the object in the hash-addressed object store, which is shared by all versions.
+     *
+     * @return
+     */
+    public String getObjectPath() {
+        String fs = File.separator;
+
+        return "objects" + fs + getHash().substring(0, 2) + fs + getHash();
+    }
+
     public String getDownloadPath() {
         return getHash().substring(0, 2) + "/" + getHash();
     }
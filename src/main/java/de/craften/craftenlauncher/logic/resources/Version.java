@@ -57,10 +57,16 @@ public class Version {
                 entry.setExtractable(true);
             if (jsonObject.has("url"))
                 entry.setUrl(jsonObject.get("url").getAsString());
+            if (jsonObject.has("downloads"))
+                entry.setDownloads(jsonObject.get("downloads").getAsJsonObject());
             this.mLibraries.add(entry);
         }
     }
 
+    public void setLibraries(Libraries libraries) {
+        this.mLibraries = libraries;
+    }
+
     public String getId() {
         return mId;
     }
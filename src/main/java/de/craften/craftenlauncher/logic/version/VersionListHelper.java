@@ -20,7 +20,7 @@ public class VersionListHelper {
 
     public VersionListHelper(MinecraftPath mcPath) {
         minecraftPath = mcPath;
-        versions = VersionLoader.getVersionStringList();
+        versions = VersionLoader.getVersionStringList(minecraftPath.getMinecraftVersionsDir() + VersionLoader.MANIFEST_FILE);
 
         //hash set to check for duplicates without evil n² time complexity
         HashSet<String> foundVersions = new HashSet<>();
@@ -17,6 +17,8 @@ public class DownloadVM extends Observable {
     private String mStatus;
     private volatile boolean mDownloaded;
     private int mDownloadedKByte;
+    private volatile int mConcurrentDownloads;
+    private volatile String mRetryState;
 
     /**
      * Changes the name of the download file to
@@ -147,4 +149,50 @@ public class DownloadVM extends Observable {
     public int getDownloadedKByte() {
         return mDownloadedKByte;
     }
+
+    /**
+     * Sets the number of downloads currently allowed to run at the same time. Observers are only
+     * notified if the number changed.
+     *
+     * @param concurrentDownloads
+     */
+    public void setConcurrentDownloads(int concurrentDownloads) {
+        if (this.mConcurrentDownloads == concurrentDownloads) {
+            return;
+        }
+        this.mConcurrentDownloads = concurrentDownloads;
+
+        setChanged();
+        notifyObservers();
+    }
+
+    /**
+     * Returns the number of downloads currently allowed to run at the same time.
+     *
+     * @return number of downloads or 0 if no downloads are running concurrently yet
+     */
+    public int getConcurrentDownloads() {
+        return mConcurrentDownloads;
+    }
+
+    /**
+     * Sets a message about retried downloads or paused servers.
+     *
+     * @param retryState message or null if all downloads are running normally
+     */
+    public void setRetryState(String retryState) {
+        this.mRetryState = retryState;
+
+        setChanged();
+        notifyObservers();
+    }
+
+    /**
+     * Returns a message about retried downloads or paused servers.
+     *
+     * @return message or null if all downloads are running normally
+     */
+    public String getRetryState() {
+        return mRetryState;
+    }
 }
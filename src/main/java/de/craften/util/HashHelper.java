@@ -0,0 +1,141 @@
+package de.craften.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Simple Hash Helper to compute and compare the SHA-1 checksums Mojang publishes
+ * for assets and libraries.
+ */
+public final class HashHelper {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private HashHelper() {
+    }
+
+    /**
+     * Returns a new SHA-1 message digest.
+     *
+     * @return SHA-1 digest
+     */
+    public static MessageDigest newSha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not supported by this JVM", e);
+        }
+    }
+
+    /**
+     * Computes the SHA-1 checksum of the given file.
+     *
+     * @param file
+     * @return lower case hex representation of the checksum
+     * @throws IOException if the file could not be read
+     */
+    public static String sha1(File file) throws IOException {
+        MessageDigest digest = newSha1();
+        update(digest, file);
+
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Updates the digest with the complete content of the given file.
+     *
+     * @param digest
+     * @param file
+     * @throws IOException if the file could not be read
+     */
+    public static void update(MessageDigest digest, File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buf = new byte[BUFFER_SIZE];
+            int read;
+
+            while ((read = in.read(buf)) != -1) {
+                digest.update(buf, 0, read);
+            }
+        }
+    }
+
+    /**
+     * Returns true if the file exists and its SHA-1 checksum equals the expected one.
+     * If the file can not be read, false is returned.
+     *
+     * @param file
+     * @param expectedSha1 hex checksum (case insensitive)
+     * @return
+     */
+    public static boolean isSha1Equal(File file, String expectedSha1) {
+        if (expectedSha1 == null || !file.isFile()) {
+            return false;
+        }
+
+        try {
+            return expectedSha1.equalsIgnoreCase(sha1(file));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Converts the given bytes into a lower case hex string.
+     *
+     * @param bytes
+     * @return
+     */
+    public static String toHex(byte[] bytes) {
+        return toHex(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Converts a part of the given bytes into a lower case hex string.
+     *
+     * @param bytes
+     * @param offset index of the first byte
+     * @param length number of bytes
+     * @return
+     */
+    public static String toHex(byte[] bytes, int offset, int length) {
+        char[] chars = new char[length * 2];
+
+        for (int i = 0; i < length; i++) {
+            chars[i * 2] = HEX[(bytes[offset + i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[bytes[offset + i] & 0xf];
+        }
+
+        return new String(chars);
+    }
+
+    /**
+     * Converts a hex string into bytes.
+     *
+     * @param hex hex string (case insensitive)
+     * @return
+     * @throws IllegalArgumentException if the string is not a valid hex string
+     */
+    public static byte[] fromHex(String hex) {
+        if (hex.length() % 2 != 0) {
+            throw new IllegalArgumentException("Odd length: " + hex);
+        }
+
+        byte[] bytes = new byte[hex.length() / 2];
+
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(hex.charAt(i * 2), 16);
+            int low = Character.digit(hex.charAt(i * 2 + 1), 16);
+
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("Not a hex string: " + hex);
+            }
+            bytes[i] = (byte) (high << 4 | low);
+        }
+
+        return bytes;
+    }
+}
@@ -0,0 +1,48 @@
+package de.craften.craftenlauncher.logic.download;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ConcurrencyLimiterTest {
+    private ConcurrencyLimiter limiter;
+
+    @Before
+    public void setUp() throws Exception {
+        limiter = new ConcurrencyLimiter("Test", 4, 2, 6);
+    }
+
+    private void complete(int count, boolean success) throws Exception {
+        for (int i = 0; i < count; i++) {
+            limiter.acquire();
+            limiter.release(success, 10, 1024);
+        }
+    }
+
+    @Test
+    public void testIncreasesOnSuccess() throws Exception {
+        complete(10, true);
+        assertEquals(5, limiter.getLimit());
+    }
+
+    @Test
+    public void testDoesNotExceedMax() throws Exception {
+        complete(200, true);
+        assertEquals(6, limiter.getLimit());
+    }
+
+    @Test
+    public void testDecreasesOnErrors() throws Exception {
+        complete(10, false);
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    public void testReleaseFreesSlot() throws Exception {
+        limiter.acquire();
+        assertEquals(1, limiter.getInFlight());
+        limiter.release(true, 10, 1024);
+        assertEquals(0, limiter.getInFlight());
+    }
+}
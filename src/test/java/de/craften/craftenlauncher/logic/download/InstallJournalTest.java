@@ -0,0 +1,85 @@
+package de.craften.craftenlauncher.logic.download;
+
+import de.craften.util.HashHelper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+public class InstallJournalTest {
+    private File dir;
+    private File journalFile;
+    private File file;
+    private String sha1;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = File.createTempFile("journal", "");
+        dir.delete();
+        dir.mkdirs();
+        journalFile = new File(dir, "journal.bin");
+        file = new File(dir, "asset");
+        write(file, "content");
+        sha1 = HashHelper.sha1(file);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        file.delete();
+        journalFile.delete();
+        dir.delete();
+    }
+
+    private static void write(File target, String content) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(target)) {
+            out.write(content.getBytes("UTF-8"));
+        }
+    }
+
+    private InstallJournal load() {
+        InstallJournal journal = new InstallJournal(journalFile, dir.getAbsolutePath());
+        journal.load();
+        return journal;
+    }
+
+    @Test
+    public void testRecordedFileSurvivesRestart() throws Exception {
+        InstallJournal journal = load();
+        journal.record(file, sha1);
+        journal.save();
+
+        InstallJournal loaded = load();
+        assertTrue(loaded.isVerified(file, sha1, file.length()));
+        assertTrue(loaded.isVerified(file, null, -1));
+        assertFalse(loaded.isVerified(file, "0000000000000000000000000000000000000000", file.length()));
+    }
+
+    @Test
+    public void testChangedFileIsNotTrusted() throws Exception {
+        InstallJournal journal = load();
+        journal.record(file, sha1);
+
+        write(file, "changed content");
+        assertFalse(journal.isVerified(file, sha1, -1));
+    }
+
+    @Test
+    public void testCorruptJournalIsIgnored() throws Exception {
+        InstallJournal journal = load();
+        journal.record(file, sha1);
+        journal.save();
+
+        try (RandomAccessFile raf = new RandomAccessFile(journalFile, "rw")) {
+            raf.seek(raf.length() - 20);
+            raf.write(0x7f);
+        }
+
+        assertEquals(0, load().size());
+    }
+}
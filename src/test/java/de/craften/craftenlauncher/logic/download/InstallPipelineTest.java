@@ -0,0 +1,71 @@
+package de.craften.craftenlauncher.logic.download;
+
+import de.craften.craftenlauncher.exception.CraftenDownloadException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class InstallPipelineTest {
+    private final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+
+    private InstallTask task(final String name, boolean critical, final int failures) {
+        return new InstallTask(name, InstallTask.Priority.NORMAL, critical) {
+            private int mFailures = failures;
+
+            @Override
+            protected void execute() throws CraftenDownloadException {
+                if (mFailures-- > 0) {
+                    throw new CraftenDownloadException("Failing " + name);
+                }
+                executed.add(name);
+            }
+        };
+    }
+
+    @Test
+    public void testDependenciesRunFirst() throws Exception {
+        InstallPipeline pipeline = new InstallPipeline(null);
+        InstallTask library = task("library", true, 0);
+        InstallTask natives = task("natives", true, 0);
+
+        pipeline.add(library);
+        pipeline.add(natives, library);
+        pipeline.awaitDone();
+
+        assertEquals(2, executed.size());
+        assertTrue(executed.indexOf("library") < executed.indexOf("natives"));
+        assertTrue(pipeline.isDone());
+    }
+
+    @Test
+    public void testFailedTaskIsRetried() throws Exception {
+        InstallPipeline pipeline = new InstallPipeline(null);
+
+        pipeline.add(task("jar", true, 2));
+        pipeline.awaitDone();
+
+        assertEquals(Collections.singletonList("jar"), executed);
+        assertTrue(pipeline.isCriticalDone());
+    }
+
+    @Test
+    public void testTaskFailingForGoodFailsDependents() throws Exception {
+        InstallPipeline pipeline = new InstallPipeline(null);
+        InstallTask library = task("library", true, InstallPipeline.MAX_TRIES);
+        InstallTask natives = task("natives", true, 0);
+
+        pipeline.add(library);
+        pipeline.add(natives, library);
+        pipeline.add(task("assets", false, 0));
+
+        assertTrue(pipeline.awaitDone(60 * 1000));
+        assertEquals(Collections.singletonList("assets"), executed);
+        assertTrue(pipeline.hasFailed());
+        assertTrue(pipeline.isCriticalFailed());
+        assertFalse(pipeline.isCriticalDone());
+    }
+}
@@ -0,0 +1,60 @@
+package de.craften.craftenlauncher.logic.download;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RetryPolicyTest {
+
+    @Test
+    public void testOpensAfterFailures() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("example.com");
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(0, breaker.onFailure());
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        assertTrue(breaker.onFailure() > 0);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void testSuccessResetsFailures() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("example.com");
+
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure();
+        }
+        assertFalse(breaker.onSuccess());
+        assertEquals(0, breaker.onFailure());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testBackoffGrowsWithJitter() throws Exception {
+        RetryPolicy policy = new RetryPolicy(100, 1000, 0.1, 1);
+
+        for (int i = 0; i < 20; i++) {
+            long first = policy.getBackoff(0);
+            long third = policy.getBackoff(2);
+            long late = policy.getBackoff(10);
+
+            assertTrue(first >= 50 && first <= 100);
+            assertTrue(third >= 200 && third <= 400);
+            assertTrue(late >= 500 && late <= 1000);
+        }
+    }
+
+    @Test
+    public void testRetryBudget() throws Exception {
+        RetryPolicy policy = new RetryPolicy(100, 1000, 0.5, 1);
+
+        assertTrue(policy.tryRetry());
+        assertFalse(policy.tryRetry());
+
+        policy.onSuccess("http://example.com/a");
+        policy.onSuccess("http://example.com/b");
+        assertTrue(policy.tryRetry());
+    }
+}
@@ -0,0 +1,56 @@
+package de.craften.craftenlauncher.logic.download.loader;
+
+import de.craften.craftenlauncher.logic.resources.ResEntry;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AssetOrdersTest {
+    private static final int LARGE = AssetOrders.LARGE_SIZE;
+
+    private static List<ResEntry> entries(int... sizes) {
+        List<ResEntry> entries = new ArrayList<>();
+        for (int i = 0; i < sizes.length; i++) {
+            ResEntry entry = new ResEntry();
+            entry.setName("object" + i);
+            entry.setSize(sizes[i]);
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    private static int[] sizes(List<ResEntry> entries) {
+        int[] sizes = new int[entries.size()];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = entries.get(i).getSize();
+        }
+        return sizes;
+    }
+
+    @Test
+    public void testLargestFirst() throws Exception {
+        List<ResEntry> ordered = AssetOrders.LARGEST_FIRST.order(entries(5, 300, 20, 1000));
+
+        assertArrayEquals(new int[]{1000, 300, 20, 5}, sizes(ordered));
+    }
+
+    @Test
+    public void testInterleavedSpreadsSmallObjects() throws Exception {
+        List<ResEntry> ordered = AssetOrders.INTERLEAVED.order(entries(1, LARGE, 2, 3, LARGE * 2, 4));
+
+        assertArrayEquals(new int[]{LARGE * 2, 1, 2, LARGE, 3, 4}, sizes(ordered));
+    }
+
+    @Test
+    public void testInterleavedKeepsAllObjects() throws Exception {
+        List<ResEntry> entries = entries(LARGE * 3, 7, LARGE, 9, 1, LARGE * 2, 3);
+        List<ResEntry> ordered = AssetOrders.INTERLEAVED.order(entries);
+
+        assertEquals(entries.size(), ordered.size());
+        assertTrue(ordered.containsAll(entries));
+        assertEquals(LARGE * 3, ordered.get(0).getSize());
+    }
+}
@@ -0,0 +1,84 @@
+package de.craften.craftenlauncher.logic.resources;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class IndexTest {
+    private static final String HASH_A = "bdf48ef6b5d0d23bbb02e17d04865216179f510a";
+    private static final String HASH_B = "6a1e0d4cc6b6ed74e2a5d94b9a2a8e83c8d5a6c1";
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("index", ".json");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        file.delete();
+    }
+
+    private Index read(String json) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(json.getBytes(StandardCharsets.UTF_8));
+        }
+        return new Index(file.getPath());
+    }
+
+    @Test
+    public void testReadsObjects() throws Exception {
+        Index index = read("{\"objects\": {"
+                + "\"minecraft/sounds/ambient/cave/cave1.ogg\": {\"hash\": \"" + HASH_A + "\", \"size\": 60357},"
+                + "\"minecraft/lang/ru_ru.lang\": {\"hash\": \"" + HASH_B + "\", \"size\": 12}}}");
+
+        assertEquals(2, index.size());
+        assertFalse(index.isVirtual());
+        assertEquals("minecraft/sounds/ambient/cave/cave1.ogg", index.getName(0));
+        assertEquals(HASH_A, index.getHash(0));
+        assertEquals(60357, index.getSize(0));
+        assertEquals("minecraft/lang/ru_ru.lang", index.getName(1));
+        assertEquals(HASH_B, index.getHash(1));
+
+        ResEntry entry = index.getRes().get(1);
+        assertEquals(HASH_B, entry.getHash());
+        assertEquals(12, entry.getSize());
+    }
+
+    @Test
+    public void testVirtualAndManyObjects() throws Exception {
+        StringBuilder json = new StringBuilder("{\"virtual\": true, \"objects\": {");
+        for (int i = 0; i < 1000; i++) {
+            json.append(i > 0 ? "," : "").append("\"sound/ä").append(i).append("\": {\"hash\": \"").append(HASH_A)
+                    .append("\", \"size\": ").append(i).append("}");
+        }
+        Index index = read(json.append("}}").toString());
+
+        assertTrue(index.isVirtual());
+        assertEquals(1000, index.size());
+        assertEquals("sound/ä999", index.getName(999));
+        assertEquals(999, index.getSize(999));
+        assertTrue(index.getRes().get(5).isVirtual());
+    }
+
+    @Test
+    public void testSkipsInvalidHashes() throws Exception {
+        Index index = read("{\"objects\": {\"a\": {\"hash\": \"xyz\", \"size\": 1}, \"b\": {\"size\": 2},"
+                + "\"c\": {\"hash\": \"" + HASH_A + "\", \"size\": 3}}}");
+
+        assertEquals(1, index.size());
+        assertEquals("c", index.getName(0));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testOutOfBounds() throws Exception {
+        read("{\"objects\": {}}").getHash(0);
+    }
+}
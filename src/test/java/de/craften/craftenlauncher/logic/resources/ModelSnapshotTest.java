@@ -0,0 +1,110 @@
+package de.craften.craftenlauncher.logic.resources;
+
+import de.craften.craftenlauncher.logic.json.JSONReader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class ModelSnapshotTest {
+    private static final String HASH = "bdf48ef6b5d0d23bbb02e17d04865216179f510a";
+    private static final String INDEX = "{\"virtual\": true, \"objects\": {"
+            + "\"sounds/step/grass1.ogg\": {\"hash\": \"" + HASH + "\", \"size\": 6000},"
+            + "\"lang/de_DE.lang\": {\"hash\": \"" + HASH + "\", \"size\": 12}}}";
+    private File file;
+    private File snapshot;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("model", ".json");
+        snapshot = new File(file.getPath() + ".bin");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        file.delete();
+        snapshot.delete();
+    }
+
+    private void write(String json) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(json.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testIndexRoundTrip() throws Exception {
+        write(INDEX);
+        Index.load(file.getPath());
+        assertTrue(snapshot.isFile());
+
+        Index index = ModelSnapshot.readIndex(file.getPath());
+        assertNotNull(index);
+        assertTrue(index.isVirtual());
+        assertEquals(2, index.size());
+        assertEquals("lang/de_DE.lang", index.getName(1));
+        assertEquals(HASH, index.getHash(1));
+        assertEquals(6000, index.getSize(0));
+    }
+
+    @Test
+    public void testChangedSourceIsParsedAgain() throws Exception {
+        write(INDEX);
+        Index.load(file.getPath());
+
+        long modified = file.lastModified();
+        write(INDEX.replace("6000", "16000"));
+        assertTrue(file.setLastModified(modified + 60000));
+        assertNull(ModelSnapshot.readIndex(file.getPath()));
+        assertEquals(16000, Index.load(file.getPath()).getSize(0));
+        assertEquals(16000, ModelSnapshot.readIndex(file.getPath()).getSize(0));
+    }
+
+    @Test
+    public void testTouchedSourceKeepsSnapshot() throws Exception {
+        write(INDEX);
+        Index.load(file.getPath());
+
+        assertTrue(file.setLastModified(file.lastModified() - 60000));
+        assertNotNull(ModelSnapshot.readIndex(file.getPath()));
+    }
+
+    @Test
+    public void testVersionRoundTrip() throws Exception {
+        write("{\"id\": \"1.7.10\", \"time\": \"t\", \"releaseTime\": \"r\", \"type\": \"release\","
+                + "\"minecraftArguments\": \"--username ${auth_player_name}\", \"mainClass\": \"net.minecraft.client.main.Main\","
+                + "\"minimumLauncherVersion\": 13, \"assets\": \"1.7.10\", \"libraries\": ["
+                + "{\"name\": \"com.mojang:realms:1.3.5\", \"downloads\": {\"artifact\": {\"sha1\": \"" + HASH + "\", \"size\": 1234}}},"
+                + "{\"name\": \"org.lwjgl.lwjgl:lwjgl-platform:2.9.1\", \"natives\": {\"linux\": \"natives-linux\","
+                + "\"windows\": \"natives-windows\", \"osx\": \"natives-osx\"}, \"extract\": {},"
+                + "\"rules\": [{\"action\": \"allow\"}, {\"action\": \"disallow\", \"os\": {\"name\": \"osx\"}}]}]}");
+
+        Version parsed = JSONReader.readJsonFileFromSelectedVersion(file.getPath());
+        Version version = ModelSnapshot.readVersion(file.getPath());
+
+        assertNotNull(version);
+        assertEquals("1.7.10", version.getId());
+        assertEquals("--username ${auth_player_name}", version.getMinecraftArguments());
+        assertEquals(13, version.getMinimumLauncherVersion());
+        assertEquals(2, version.getLibraries().get().size());
+
+        LibEntry realms = version.getLibraries().get().get(0);
+        assertEquals(HASH, realms.getSha1());
+        assertEquals(1234, realms.getSize());
+        assertEquals(parsed.getLibraries().get().get(0).getFileName(), realms.getFileName());
+
+        LibEntry lwjgl = version.getLibraries().get().get(1);
+        assertTrue(lwjgl.isExtractable());
+        assertEquals("natives-osx", lwjgl.getNatives().getOsx());
+        assertEquals(2, lwjgl.getRules().length);
+        assertEquals("osx", lwjgl.getRules()[1].getOs().getName());
+        assertEquals(parsed.getLibraries().get().get(1).getFileName(), lwjgl.getFileName());
+        assertEquals(parsed.getLibraries().get().get(1).isNeeded(), lwjgl.isNeeded());
+    }
+}
@@ -0,0 +1,50 @@
+package de.craften.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+import static org.junit.Assert.*;
+
+public class HashHelperTest {
+    private static final String HELLO_SHA1 = "aaf4c61ddcc5e8a2dabede0f3b482cd9aea9434d";
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("hashhelper", ".txt");
+
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write("hello".getBytes("UTF-8"));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testSha1() throws Exception {
+        assertEquals(HELLO_SHA1, HashHelper.sha1(file));
+    }
+
+    @Test
+    public void testIsSha1Equal() throws Exception {
+        assertTrue(HashHelper.isSha1Equal(file, HELLO_SHA1.toUpperCase()));
+        assertFalse(HashHelper.isSha1Equal(file, "da39a3ee5e6b4b0d3255bfef95601890afd80709"));
+    }
+
+    @Test
+    public void testIsSha1EqualOnMissingFile() throws Exception {
+        assertFalse(HashHelper.isSha1Equal(new File(file.getPath() + ".missing"), HELLO_SHA1));
+    }
+
+    @Test
+    public void testToHex() throws Exception {
+        assertEquals("00ff10", HashHelper.toHex(new byte[]{0, (byte) 0xff, 0x10}));
+    }
+}